@@ -0,0 +1,65 @@
+package com.epoxy.benchmark;
+
+import com.epoxy.service.EpoxyService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+* combined/appended assembly of already fetched responses, plus serialization of the result
+* every tenth response is missing so the API_FAILED replacement is exercised
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    private int endpoints;
+
+    private EpoxyService epoxyService;
+    private ObjectMapper objectMapper;
+    private List<String> urls;
+    private List<JsonNode> jsonNodeList;
+
+    @Setup
+    public void setUp() throws Exception {
+        epoxyService = new EpoxyService();
+        objectMapper = new ObjectMapper();
+        JsonNode jsonNode = objectMapper.readTree(Payloads.json(10));
+        urls = IntStream.range(0, endpoints)
+                .mapToObj(i -> "http://upstream-" + i + ".example.com/api")
+                .collect(Collectors.toList());
+        jsonNodeList = IntStream.range(0, endpoints)
+                .mapToObj(i -> i % 10 == 9 ? null : jsonNode)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Map<String, Object> combine() {
+        return epoxyService.combine(urls, jsonNodeList);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> append() {
+        return epoxyService.append(urls, jsonNodeList);
+    }
+
+    @Benchmark
+    public byte[] combineAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(epoxyService.combine(urls, jsonNodeList));
+    }
+
+    @Benchmark
+    public byte[] appendAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(epoxyService.append(urls, jsonNodeList));
+    }
+}
@@ -0,0 +1,100 @@
+package com.epoxy.benchmark;
+
+import com.epoxy.EpoxyApplication;
+import com.epoxy.model.dto.EpoxyRequestDTO;
+import com.epoxy.service.EpoxyService;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static com.epoxy.model.constants.AppConstants.ERROR_REPLACE;
+
+/*
+* End to end EpoxyService::combined against an in-process stub upstream answering after latencyMs
+* the response cache is bypassed (cache=false) so every invocation goes to the stub
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class FanOutBenchmark {
+
+    @Param({"10"})
+    private int latencyMs;
+
+    @Param({"1", "10", "50"})
+    private int endpoints;
+
+    @Param({"rest-template", "http-client"})
+    private String engine;
+
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+    private ConfigurableApplicationContext context;
+    private EpoxyService epoxyService;
+    private EpoxyRequestDTO requestDTO;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        byte[] body = Payloads.json(10).getBytes(StandardCharsets.UTF_8);
+        stubExecutor = Executors.newCachedThreadPool();
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stub.setExecutor(stubExecutor);
+        stub.createContext("/", exchange -> {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.start();
+
+        context = new SpringApplicationBuilder(EpoxyApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(Map.of(
+                        "epoxy.upstream.engine", engine,
+                        "logging.level.root", "WARN"))
+                .run();
+        epoxyService = context.getBean(EpoxyService.class);
+
+        int port = stub.getAddress().getPort();
+        String jsonArray = IntStream.range(0, endpoints)
+                .mapToObj(i -> "\"http://127.0.0.1:" + port + "/api/" + i + "\"")
+                .collect(Collectors.joining(",", "[", "]"));
+        requestDTO = EpoxyRequestDTO.builder()
+                .base64ApisEncoded(Base64.getEncoder().encodeToString(jsonArray.getBytes(StandardCharsets.UTF_8)))
+                .errorsType(ERROR_REPLACE)
+                .timeout(5000)
+                .cache(false)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Map<String, Object> combined() {
+        return epoxyService.combined(requestDTO).join();
+    }
+}
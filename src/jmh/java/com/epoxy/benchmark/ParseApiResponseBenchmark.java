@@ -0,0 +1,60 @@
+package com.epoxy.benchmark;
+
+import com.epoxy.util.Projection;
+import com.epoxy.util.Util;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Util::parseApiResponse for JSON and XML bodies, from a String (old path) and from the response stream,
+* and from the stream keeping only the ids of the records (fields=$.items[*].id)
+* records=1/100/10000 gives roughly 80B/8KB/800KB of JSON
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseApiResponseBenchmark {
+
+    @Param({"json", "xml"})
+    private String format;
+
+    @Param({"1", "100", "10000"})
+    private int records;
+
+    private Util util;
+    private MediaType mediaType;
+    private String body;
+    private byte[] bodyBytes;
+    private Projection projection;
+
+    @Setup
+    public void setUp() {
+        util = new Util();
+        mediaType = "xml".equals(format) ? MediaType.APPLICATION_XML : MediaType.APPLICATION_JSON;
+        body = "xml".equals(format) ? Payloads.xml(records) : Payloads.json(records);
+        bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        projection = Projection.parse("xml".equals(format) ? "$.item[*].id" : "$.items[*].id");
+    }
+
+    @Benchmark
+    public JsonNode fromString() {
+        return util.parseApiResponse(new String(bodyBytes, StandardCharsets.UTF_8), mediaType);
+    }
+
+    @Benchmark
+    public JsonNode fromStream() {
+        return util.parseApiResponse(new ByteArrayInputStream(bodyBytes), mediaType);
+    }
+
+    @Benchmark
+    public JsonNode fromStreamProjected() {
+        return util.parseApiResponse(new ByteArrayInputStream(bodyBytes), mediaType, projection);
+    }
+}
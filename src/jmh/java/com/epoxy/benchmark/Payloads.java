@@ -0,0 +1,27 @@
+package com.epoxy.benchmark;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+* Synthetic upstream bodies shared by the benchmarks: an array of flat records, as JSON or XML
+* */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static String json(int records) {
+        return IntStream.range(0, records)
+                .mapToObj(i -> "{\"id\":" + i + ",\"name\":\"item-" + i + "\",\"price\":" + (i * 1.25)
+                        + ",\"active\":" + (i % 2 == 0) + ",\"tags\":[\"a\",\"b\",\"c\"]}")
+                .collect(Collectors.joining(",", "{\"items\":[", "]}"));
+    }
+
+    static String xml(int records) {
+        return IntStream.range(0, records)
+                .mapToObj(i -> "<item><id>" + i + "</id><name>item-" + i + "</name><price>" + (i * 1.25)
+                        + "</price><active>" + (i % 2 == 0) + "</active><tags><tag>a</tag><tag>b</tag><tag>c</tag></tags></item>")
+                .collect(Collectors.joining("", "<items>", "</items>"));
+    }
+}
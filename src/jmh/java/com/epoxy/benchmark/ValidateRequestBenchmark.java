@@ -0,0 +1,58 @@
+package com.epoxy.benchmark;
+
+import com.epoxy.model.EpoxyRequest;
+import com.epoxy.model.dto.EpoxyRequestDTO;
+import com.epoxy.util.EndpointListCache;
+import com.epoxy.util.Util;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static com.epoxy.model.constants.AppConstants.ERROR_REPLACE;
+
+/*
+* Base64 decode + endpoint list parse done by Util::validateRequest for every request,
+* uncached and with the endpoint list cache (steady state: every request is a hit)
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateRequestBenchmark {
+
+    @Param({"1", "50", "500"})
+    private int urls;
+
+    private Util util;
+    private Util cachingUtil;
+    private EpoxyRequestDTO requestDTO;
+
+    @Setup
+    public void setUp() {
+        util = new Util();
+        cachingUtil = new Util();
+        ReflectionTestUtils.setField(cachingUtil, "endpointListCache", new EndpointListCache(1000));
+        String jsonArray = IntStream.range(0, urls)
+                .mapToObj(i -> "\"http://upstream-" + i + ".example.com/api/v1/items?page=" + i + "\"")
+                .collect(Collectors.joining(",", "[", "]"));
+        requestDTO = EpoxyRequestDTO.builder()
+                .base64ApisEncoded(Base64.getEncoder().encodeToString(jsonArray.getBytes(StandardCharsets.UTF_8)))
+                .errorsType(ERROR_REPLACE)
+                .build();
+    }
+
+    @Benchmark
+    public EpoxyRequest validateRequest() {
+        return util.validateRequest(requestDTO);
+    }
+
+    @Benchmark
+    public EpoxyRequest validateRequestCached() {
+        return cachingUtil.validateRequest(requestDTO);
+    }
+}
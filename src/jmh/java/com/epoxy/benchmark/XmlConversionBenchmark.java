@@ -0,0 +1,61 @@
+package com.epoxy.benchmark;
+
+import com.epoxy.util.XmlStreamConverter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.openjdk.jmh.annotations.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+* XML body to JSON: XmlMapper.readTree (old path) vs the StAX converter into a tree and straight into JSON bytes (passthrough)
+* run with -prof gc to compare allocation per operation
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlConversionBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int records;
+
+    private XmlMapper xmlMapper;
+    private XmlStreamConverter xmlStreamConverter;
+    private JsonFactory jsonFactory;
+    private byte[] bodyBytes;
+
+    @Setup
+    public void setUp() {
+        xmlMapper = new XmlMapper();
+        xmlStreamConverter = new XmlStreamConverter();
+        jsonFactory = new JsonFactory();
+        bodyBytes = Payloads.xml(records).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public JsonNode xmlMapperTree() throws IOException {
+        return xmlMapper.readTree(new ByteArrayInputStream(bodyBytes));
+    }
+
+    @Benchmark
+    public JsonNode streamingTree() throws IOException {
+        return xmlStreamConverter.readTree(new ByteArrayInputStream(bodyBytes));
+    }
+
+    @Benchmark
+    public byte[] streamingJsonBytes() throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(bodyBytes.length);
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            xmlStreamConverter.write(new ByteArrayInputStream(bodyBytes), generator);
+        }
+        return json.toByteArray();
+    }
+}
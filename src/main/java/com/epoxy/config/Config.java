@@ -1,14 +1,230 @@
 package com.epoxy.config;
 
+import com.epoxy.service.CircuitBreakingUpstreamClient;
+import com.epoxy.service.FetchMetrics;
+import com.epoxy.service.HedgedUpstreamClient;
+import com.epoxy.service.HttpClientUpstreamClient;
+import com.epoxy.service.MeteredUpstreamClient;
+import com.epoxy.service.RedisSharedCacheBackend;
+import com.epoxy.service.RestTemplateUpstreamClient;
+import com.epoxy.service.SharedCacheBackend;
+import com.epoxy.service.SharedResponseCache;
+import com.epoxy.service.UpstreamCircuitBreakers;
+import com.epoxy.service.UpstreamClient;
+import com.epoxy.service.UpstreamLatencies;
+import com.epoxy.util.EndpointListCache;
+import com.epoxy.util.HedgeBudget;
+import com.epoxy.util.SingleFlight;
+import com.epoxy.util.UpstreamAdmission;
+import com.epoxy.util.UpstreamExecutor;
+import com.epoxy.util.XmlStreamConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.server.Compression;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 @Component
 public class Config {
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
-        return restTemplateBuilder.build();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder, CloseableHttpClient upstreamHttpClient) {
+        return restTemplateBuilder
+                .requestFactory(() -> new DeadlineAwareClientHttpRequestFactory(upstreamHttpClient))
+                .build();
+    }
+
+    /*
+     * The system SSLContext keeps its client session cache, so TLS sessions are
+     * resumed when a pooled connection to the same host has to be re-established.
+     * */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager upstreamConnectionManager(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        EpoxyProperties.Upstream upstream = epoxyProperties.getUpstream();
+        EpoxyProperties.Pool pool = upstream.getPool();
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(pool.getMaxTotal())
+                .setMaxConnPerRoute(pool.getMaxPerRoute())
+                .setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create()
+                        .setSslContext(SSLContexts.createSystemDefault())
+                        .build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(upstream.getConnectTimeoutMs()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(pool.getValidateAfterInactivityMs()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(pool.getTimeToLiveMs()))
+                        .build())
+                .build();
+
+        Gauge.builder("epoxy.http.pool.leased", connectionManager, manager -> manager.getTotalStats().getLeased())
+                .description("Upstream connections currently leased")
+                .register(meterRegistry);
+        Gauge.builder("epoxy.http.pool.pending", connectionManager, manager -> manager.getTotalStats().getPending())
+                .description("Fetches waiting for an upstream connection")
+                .register(meterRegistry);
+        Gauge.builder("epoxy.http.pool.available", connectionManager, manager -> manager.getTotalStats().getAvailable())
+                .description("Idle keep-alive upstream connections")
+                .register(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient upstreamHttpClient(EpoxyProperties epoxyProperties, PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(upstreamConnectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(epoxyProperties.getUpstream().getPool().getIdleEvictMs()))
+                .build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public UpstreamExecutor upstreamExecutor(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        UpstreamExecutor upstreamExecutor = UpstreamExecutor.create(epoxyProperties.getFetchExecutor());
+        upstreamExecutor.bindTo(meterRegistry);
+        return upstreamExecutor;
+    }
+
+    @Bean
+    public SingleFlight<String, JsonNode> upstreamSingleFlight(MeterRegistry meterRegistry) {
+        SingleFlight<String, JsonNode> singleFlight = new SingleFlight<>();
+        singleFlight.bindTo(meterRegistry, "epoxy.upstream.fetches");
+        return singleFlight;
+    }
+
+    @Bean
+    public EndpointListCache endpointListCache(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        EndpointListCache endpointListCache = new EndpointListCache(epoxyProperties.getEndpointCache().getMaxEntries());
+        endpointListCache.bindTo(meterRegistry, "epoxy.endpoint.lists");
+        return endpointListCache;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "epoxy.xml", name = "streaming", havingValue = "true", matchIfMissing = true)
+    public XmlStreamConverter xmlStreamConverter(EpoxyProperties epoxyProperties) {
+        EpoxyProperties.Xml xml = epoxyProperties.getXml();
+        return new XmlStreamConverter(xml.getArrayElements(), xml.getAttributePrefix(), xml.getTextKey(), xml.getMaxBufferedChars());
+    }
+
+    /*
+     * Redis unless another SharedCacheBackend bean is defined.
+     * */
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "epoxy.cache.shared", name = "enabled", havingValue = "true")
+    @ConditionalOnMissingBean(SharedCacheBackend.class)
+    public SharedCacheBackend sharedCacheBackend(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        RedisSharedCacheBackend backend = new RedisSharedCacheBackend(epoxyProperties.getCache().getShared());
+        backend.bindTo(meterRegistry);
+        return backend;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "epoxy.cache.shared", name = "enabled", havingValue = "true")
+    public SharedResponseCache sharedResponseCache(SharedCacheBackend sharedCacheBackend, EpoxyProperties epoxyProperties,
+                                                   MeterRegistry meterRegistry) {
+        EpoxyProperties.Cache cache = epoxyProperties.getCache();
+        return new SharedResponseCache(sharedCacheBackend, Duration.ofMillis(cache.getDefaultTtlMs()),
+                cache.getShared().getMaxConnections(), meterRegistry);
+    }
+
+    @Bean
+    public WebMvcConfigurer routeHintConfigurer(EpoxyProperties epoxyProperties) {
+        EpoxyProperties.Shared shared = epoxyProperties.getCache().getShared();
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                if (!shared.getPeers().isEmpty()) {
+                    registry.addInterceptor(new RouteHintInterceptor(shared.getPeers(), shared.getVirtualNodes()));
+                }
+            }
+        };
+    }
+
+    @Bean
+    public UpstreamAdmission upstreamAdmission(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        EpoxyProperties.Admission admission = epoxyProperties.getAdmission();
+        UpstreamAdmission upstreamAdmission = new UpstreamAdmission(admission.getMaxInFlight(), admission.getMaxWaitingRequests());
+        upstreamAdmission.bindTo(meterRegistry);
+        return upstreamAdmission;
+    }
+
+    @Bean
+    public UpstreamClient upstreamClient(EpoxyProperties epoxyProperties, RestTemplate restTemplate, UpstreamExecutor upstreamExecutor,
+                                         UpstreamLatencies upstreamLatencies, UpstreamCircuitBreakers upstreamCircuitBreakers,
+                                         FetchMetrics fetchMetrics, MeterRegistry meterRegistry) {
+        EpoxyProperties.Hedge hedge = epoxyProperties.getHedge();
+        HedgedUpstreamClient hedgedClient = new HedgedUpstreamClient(
+                engineClient(epoxyProperties.getUpstream(), restTemplate, upstreamExecutor),
+                upstreamLatencies,
+                new HedgeBudget(hedge.getBudgetPercent(), hedge.getMaxBurst()));
+        hedgedClient.bindTo(meterRegistry);
+        UpstreamClient upstreamClient = epoxyProperties.getCircuitBreaker().isEnabled()
+                ? new CircuitBreakingUpstreamClient(hedgedClient, upstreamCircuitBreakers)
+                : hedgedClient;
+        return new MeteredUpstreamClient(upstreamClient, fetchMetrics);
+    }
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper, FetchMetrics fetchMetrics,
+                                                                                  ServerProperties serverProperties) {
+        return new MeteredJackson2HttpMessageConverter(objectMapper, fetchMetrics, bufferedResponseBytes(serverProperties));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter mappingJackson2SmileHttpMessageConverter(FetchMetrics fetchMetrics,
+                                                                                           ServerProperties serverProperties) {
+        return new MeteredSmileHttpMessageConverter(
+                Jackson2ObjectMapperBuilder.smile().build(), fetchMetrics, bufferedResponseBytes(serverProperties));
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter mappingJackson2CborHttpMessageConverter(FetchMetrics fetchMetrics,
+                                                                                         ServerProperties serverProperties) {
+        return new MeteredCborHttpMessageConverter(
+                Jackson2ObjectMapperBuilder.cbor().build(), fetchMetrics, bufferedResponseBytes(serverProperties));
+    }
+
+    /*
+     * Responses under the compression threshold are buffered so they go out with a Content-Length and uncompressed.
+     * */
+    private static int bufferedResponseBytes(ServerProperties serverProperties) {
+        Compression compression = serverProperties.getCompression();
+        return compression.getEnabled() ? (int) compression.getMinResponseSize().toBytes() : 0;
+    }
+
+    private UpstreamClient engineClient(EpoxyProperties.Upstream upstream, RestTemplate restTemplate, UpstreamExecutor upstreamExecutor) {
+        switch (upstream.getEngine()) {
+            case HTTP_CLIENT:
+                HttpClient httpClient = HttpClient.newBuilder()
+                        .connectTimeout(Duration.ofMillis(upstream.getConnectTimeoutMs()))
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .build();
+                return new HttpClientUpstreamClient(httpClient);
+            case REST_TEMPLATE:
+            default:
+                return new RestTemplateUpstreamClient(restTemplate, upstreamExecutor);
+        }
     }
 }
@@ -0,0 +1,54 @@
+package com.epoxy.config;
+
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.Deadline;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import java.net.URI;
+
+/*
+ * Applies the deadline of the calling fetch to each request (pool lease, connect and
+ * response timeouts) instead of sharing one timeout between all concurrent requests,
+ * and hooks the request up to the fetch's Cancellation so it can be aborted mid-flight.
+ * */
+public class DeadlineAwareClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    public DeadlineAwareClientHttpRequestFactory(HttpClient httpClient) {
+        super(httpClient);
+    }
+
+    @Override
+    protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+        ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+        Cancellation cancellation = Cancellation.current();
+        if (cancellation != null && request instanceof HttpUriRequestBase) {
+            cancellation.onCancel(((HttpUriRequestBase) request)::cancel);
+        }
+        return request;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return super.createHttpContext(httpMethod, uri);
+        }
+
+        Timeout remaining = Timeout.ofMilliseconds(Math.max(1, deadline.remainingMillis()));
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(remaining)
+                .setConnectTimeout(remaining)
+                .setResponseTimeout(remaining)
+                .build());
+        return context;
+    }
+}
@@ -0,0 +1,240 @@
+package com.epoxy.config;
+
+import com.epoxy.model.constants.ExecutorMode;
+import com.epoxy.model.constants.UpstreamEngine;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "epoxy")
+public class EpoxyProperties {
+
+    private FetchExecutor fetchExecutor = new FetchExecutor();
+    private Upstream upstream = new Upstream();
+    private Cache cache = new Cache();
+    private EndpointCache endpointCache = new EndpointCache();
+    private Passthrough passthrough = new Passthrough();
+    private Latency latency = new Latency();
+    private Hedge hedge = new Hedge();
+    private AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Batch batch = new Batch();
+    private Admission admission = new Admission();
+    private Partial partial = new Partial();
+    private SingleFlight singleFlight = new SingleFlight();
+    private Xml xml = new Xml();
+    private Sse sse = new Sse();
+    private Metrics metrics = new Metrics();
+
+    /*
+     * Executor running the upstream fetches of a fan-out
+     * */
+    @Data
+    public static class FetchExecutor {
+        private ExecutorMode mode = ExecutorMode.BOUNDED;
+        private int maxThreads = 64;
+        private int queueCapacity = 2000;
+        private long keepAliveMs = 60000;
+    }
+
+    /*
+     * Client used for the upstream calls
+     * */
+    @Data
+    public static class Upstream {
+        private UpstreamEngine engine = UpstreamEngine.REST_TEMPLATE;
+        private long connectTimeoutMs = 1000;
+        private Pool pool = new Pool();
+    }
+
+    /*
+     * Keep-alive connection pool of the rest-template engine
+     * */
+    @Data
+    public static class Pool {
+        private int maxTotal = 200;
+        private int maxPerRoute = 50;
+        private long idleEvictMs = 30000;
+        private long validateAfterInactivityMs = 2000;
+        private long timeToLiveMs = 300000;
+    }
+
+    /*
+     * In-process cache of parsed upstream responses, off unless enabled
+     * */
+    @Data
+    public static class Cache {
+        private boolean enabled = false;
+        private long defaultTtlMs = 5000;
+        private long maxWeightBytes = 64L * 1024 * 1024;
+        private long staleWhileRevalidateMs = 30000;
+        private long staleIfErrorMs = 300000;
+        private OffHeap offHeap = new OffHeap();
+        private Shared shared = new Shared();
+    }
+
+    /*
+     * Off-heap tier of the response cache: serialized payloads in direct ByteBuffer segments
+     * */
+    @Data
+    public static class OffHeap {
+        private boolean enabled = false;
+        private long capacityBytes = 256L * 1024 * 1024;
+        private int segmentBytes = 8 * 1024 * 1024;
+        private long minBytes = 4096;
+    }
+
+    /*
+     * Second-level cache shared by all instances: Redis-compatible nodes (host:port) the keys are
+     * spread over by consistent hashing, and the peer instances the routing hint is computed over
+     * */
+    @Data
+    public static class Shared {
+        private boolean enabled = false;
+        private List<String> nodes = new ArrayList<>();
+        private String password;
+        private String keyPrefix = "epoxy:";
+        private int timeoutMs = 50;
+        private int maxConnections = 32;
+        private int virtualNodes = 160;
+        private long circuitOpenMs = 5000;
+        private List<String> peers = new ArrayList<>();
+    }
+
+    /*
+     * Decoded {apis} path segments, valid and malformed ones
+     * */
+    @Data
+    public static class EndpointCache {
+        private long maxEntries = 10000;
+    }
+
+    /*
+     * Raw JSON passthrough: validate with a token scan, or trust the Content-Type only
+     * */
+    @Data
+    public static class Passthrough {
+        private boolean validate = true;
+    }
+
+    /*
+     * Per-host latency histograms feeding hedging and adaptive timeouts
+     * */
+    @Data
+    public static class Latency {
+        private long windowMs = 60000;
+        private int minSamples = 20;
+        private long maxHosts = 1000;
+    }
+
+    /*
+     * Second identical GET once the first one is slower than the host's percentile,
+     * limited to budget-percent extra requests
+     * */
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        private double percentile = 0.95;
+        private long minDelayMs = 5;
+        private int budgetPercent = 10;
+        private int maxBurst = 10;
+    }
+
+    /*
+     * Timeout of a fetch without an explicit timeout: percentile x multiplier, within min/max
+     * */
+    @Data
+    public static class AdaptiveTimeout {
+        private boolean enabled = true;
+        private double percentile = 0.99;
+        private double multiplier = 2.0;
+        private long minMs = 100;
+        private long maxMs = 5000;
+    }
+
+    /*
+     * Per-host circuit breaker around the upstream calls
+     * */
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRateThreshold = 50;
+        private int slowCallRateThreshold = 80;
+        private long slowCallDurationMs = 2000;
+        private long waitInOpenMs = 10000;
+        private int permittedCallsInHalfOpen = 3;
+        private long maxHosts = 1000;
+    }
+
+    /*
+     * POST batch endpoint: body size and upstream calls in flight per batch
+     * */
+    @Data
+    public static class Batch {
+        private int maxEntries = 10000;
+        private int maxConcurrency = 64;
+    }
+
+    /*
+     * Fan-out width of one request and global budget of upstream fetches in flight
+     * */
+    @Data
+    public static class Admission {
+        private int requestWidth = 32;
+        private int maxInFlight = 512;
+        private int maxWaitingRequests = 64;
+    }
+
+    /*
+     * errors=partial: how long fetches may run past the response to fill the cache
+     * */
+    @Data
+    public static class Partial {
+        private long fetchTimeoutMs = 5000;
+    }
+
+    /*
+     * Fetches of one URL shared between concurrent requests: the shared load runs until the latest of
+     * the leading caller's deadline and max-load-ms, each caller stops waiting at its own deadline
+     * */
+    @Data
+    public static class SingleFlight {
+        private long maxLoadMs = 10000;
+    }
+
+    /*
+     * XML upstream bodies: streaming StAX conversion (XmlMapper when disabled) and its JSON shape
+     * */
+    @Data
+    public static class Xml {
+        private boolean streaming = true;
+        private Set<String> arrayElements = new HashSet<>();
+        private String attributePrefix = "";
+        private String textKey = "";
+        private long maxBufferedChars = 1048576;
+    }
+
+    /*
+     * /stream (text/event-stream): interval of the keep-alive comment sent while no result is ready
+     * */
+    @Data
+    public static class Sse {
+        private long heartbeatMs = 15000;
+    }
+
+    /*
+     * Meters tagged with the upstream host: distinct hosts with a tag of their own, later ones are tagged "other"
+     * */
+    @Data
+    public static class Metrics {
+        private int maxHostTags = 100;
+    }
+}
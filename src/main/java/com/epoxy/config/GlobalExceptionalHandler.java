@@ -1,9 +1,12 @@
 package com.epoxy.config;
 
 import com.epoxy.model.EpoxyErrorResponse;
+import com.epoxy.config.exceptions.AdmissionRejectedException;
 import com.epoxy.config.exceptions.ApiFailedException;
 import com.epoxy.config.exceptions.EpoxyBadRequestException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -23,4 +26,11 @@ public class GlobalExceptionalHandler {
     public @ResponseBody EpoxyErrorResponse handleException(ApiFailedException ex) {
         return new EpoxyErrorResponse(HttpStatus.OK.value(), ex.getMessage());
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(value = AdmissionRejectedException.class)
+    public ResponseEntity<EpoxyErrorResponse> handleException(AdmissionRejectedException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new EpoxyErrorResponse(HttpStatus.TOO_MANY_REQUESTS.value(), ex.getMessage()));
+    }
+}
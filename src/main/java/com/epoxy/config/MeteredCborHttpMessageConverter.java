@@ -0,0 +1,32 @@
+package com.epoxy.config;
+
+import com.epoxy.service.FetchMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/*
+ * CBOR (application/cbor) output for clients asking for it in Accept.
+ * Replaces the converter Spring MVC registers when CBOR is on the classpath.
+ * */
+public class MeteredCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    private final FetchMetrics fetchMetrics;
+    private final int bufferedBytes;
+
+    public MeteredCborHttpMessageConverter(ObjectMapper cborMapper, FetchMetrics fetchMetrics, int bufferedBytes) {
+        super(cborMapper);
+        this.fetchMetrics = fetchMetrics;
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        MeteredOutputMessage.write(fetchMetrics, FetchMetrics.FORMAT_CBOR, bufferedBytes, outputMessage,
+                countingMessage -> super.writeInternal(object, type, countingMessage));
+    }
+}
@@ -0,0 +1,32 @@
+package com.epoxy.config;
+
+import com.epoxy.service.FetchMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/*
+ * Jackson converter of the JSON responses that times the serialization and counts the
+ * bytes written. Replaces the converter Spring Boot would register by default.
+ * */
+public class MeteredJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final FetchMetrics fetchMetrics;
+    private final int bufferedBytes;
+
+    public MeteredJackson2HttpMessageConverter(ObjectMapper objectMapper, FetchMetrics fetchMetrics, int bufferedBytes) {
+        super(objectMapper);
+        this.fetchMetrics = fetchMetrics;
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        MeteredOutputMessage.write(fetchMetrics, FetchMetrics.FORMAT_JSON, bufferedBytes, outputMessage,
+                countingMessage -> super.writeInternal(object, type, countingMessage));
+    }
+}
@@ -0,0 +1,113 @@
+package com.epoxy.config;
+
+import com.epoxy.service.FetchMetrics;
+import com.epoxy.util.CountingOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Output message counting the bytes a converter writes, shared by the metered converters.
+ * The first bufferedBytes are held back: a body that fits is sent with a Content-Length, which is
+ * what lets the container leave responses under server.compression.min-response-size uncompressed
+ * (without a length it compresses every chunked response).
+ * */
+final class MeteredOutputMessage implements HttpOutputMessage {
+
+    @FunctionalInterface
+    interface Writer {
+        void write(HttpOutputMessage outputMessage) throws IOException;
+    }
+
+    private final HttpOutputMessage delegate;
+    private final int bufferedBytes;
+    private CountingOutputStream body;
+    private ByteArrayOutputStream buffer;
+    private OutputStream target;
+
+    private MeteredOutputMessage(HttpOutputMessage delegate, int bufferedBytes) {
+        this.delegate = delegate;
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    /*
+     * Runs the write, recording its time and size under the given format.
+     * */
+    static void write(FetchMetrics fetchMetrics, String format, int bufferedBytes,
+                      HttpOutputMessage outputMessage, Writer writer) throws IOException {
+        MeteredOutputMessage countingMessage = new MeteredOutputMessage(outputMessage, bufferedBytes);
+        long start = System.nanoTime();
+        String outcome = FetchMetrics.OUTCOME_ERROR;
+        try {
+            writer.write(countingMessage);
+            countingMessage.finish();
+            outcome = FetchMetrics.OUTCOME_SUCCESS;
+        }
+        finally {
+            fetchMetrics.recordSerialize(format, outcome, System.nanoTime() - start, countingMessage.getCount());
+        }
+    }
+
+    @Override
+    public OutputStream getBody() throws IOException {
+        if (body == null) {
+            body = new CountingOutputStream(bufferedBytes > 0 ? new BufferingStream() : delegate.getBody());
+        }
+        return body;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    private long getCount() {
+        return body == null ? 0 : body.getCount();
+    }
+
+    private void finish() throws IOException {
+        if (buffer != null && target == null) {
+            delegate.getHeaders().setContentLength(buffer.size());
+            target = delegate.getBody();
+            buffer.writeTo(target);
+        }
+        if (body != null) {
+            body.flush();
+        }
+    }
+
+    private final class BufferingStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target != null) {
+                target.write(bytes, offset, length);
+                return;
+            }
+            if (buffer == null) {
+                buffer = new ByteArrayOutputStream(Math.min(bufferedBytes, 8192));
+            }
+            if (buffer.size() + length <= bufferedBytes) {
+                buffer.write(bytes, offset, length);
+                return;
+            }
+            target = delegate.getBody();
+            buffer.writeTo(target);
+            target.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.epoxy.config;
+
+import com.epoxy.service.FetchMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/*
+ * Smile (application/x-jackson-smile) output for clients asking for it in Accept.
+ * Replaces the converter Spring MVC registers when Smile is on the classpath.
+ * */
+public class MeteredSmileHttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+
+    private final FetchMetrics fetchMetrics;
+    private final int bufferedBytes;
+
+    public MeteredSmileHttpMessageConverter(ObjectMapper smileMapper, FetchMetrics fetchMetrics, int bufferedBytes) {
+        super(smileMapper);
+        this.fetchMetrics = fetchMetrics;
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        MeteredOutputMessage.write(fetchMetrics, FetchMetrics.FORMAT_SMILE, bufferedBytes, outputMessage,
+                countingMessage -> super.writeInternal(object, type, countingMessage));
+    }
+}
@@ -0,0 +1,41 @@
+package com.epoxy.config;
+
+import com.epoxy.model.constants.AppConstants;
+import com.epoxy.util.ConsistentHashRing;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Adds X-Epoxy-Route, the instance owning the {apis} segment of the request on a consistent
+ * hash ring of the peers. A load balancer hashing on it (or clients following it) sends the
+ * same fan-out to the same instance, where the in-process cache and the single flight absorb
+ * the repeats; any instance still answers any request.
+ * */
+class RouteHintInterceptor implements HandlerInterceptor {
+
+    static final String ROUTE_HEADER = "X-Epoxy-Route";
+
+    private final ConsistentHashRing<String> ring;
+
+    RouteHintInterceptor(List<String> peers, int virtualNodes) {
+        this.ring = new ConsistentHashRing<>(peers, virtualNodes, Function.identity());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        Object apis = variables instanceof Map ? ((Map<?, ?>) variables).get(AppConstants.REQUEST_PARAM_APIS) : null;
+        if (apis != null) {
+            String peer = ring.nodeFor(apis.toString());
+            if (peer != null) {
+                response.setHeader(ROUTE_HEADER, peer);
+            }
+        }
+        return true;
+    }
+}
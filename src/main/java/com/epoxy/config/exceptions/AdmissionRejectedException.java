@@ -0,0 +1,9 @@
+package com.epoxy.config.exceptions;
+
+public class AdmissionRejectedException extends RuntimeException{
+    private String message;
+    public AdmissionRejectedException(String msg) {
+        super(msg);
+        this.message = msg;
+    }
+}
@@ -0,0 +1,9 @@
+package com.epoxy.config.exceptions;
+
+public class CircuitOpenException extends RuntimeException{
+    private String message;
+    public CircuitOpenException(String msg) {
+        super(msg);
+        this.message = msg;
+    }
+}
@@ -0,0 +1,9 @@
+package com.epoxy.config.exceptions;
+
+public class UpstreamCallException extends RuntimeException{
+    private String message;
+    public UpstreamCallException(String msg) {
+        super(msg);
+        this.message = msg;
+    }
+}
@@ -4,7 +4,12 @@ import com.epoxy.model.dto.EpoxyRequestDTO;
 import com.epoxy.model.constants.AppConstants;
 import com.epoxy.service.EpoxyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -13,6 +18,9 @@ import java.util.concurrent.CompletableFuture;
 @RequestMapping(AppConstants.EPOXY_V1_BASE_API)
 public class EpoxyController {
 
+    /* keeps reverse proxies such as nginx from buffering the event stream */
+    private static final String ACCEL_BUFFERING_HEADER = "X-Accel-Buffering";
+
     @Autowired
     private EpoxyService epoxyService;
 
@@ -20,13 +28,19 @@ public class EpoxyController {
     public CompletableFuture<Map<String, Object>> combined(
             @PathVariable(AppConstants.REQUEST_PARAM_APIS) String apis,
             @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors,
-            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout) {
+            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_CACHE, required = false) Boolean cache,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_PASSTHROUGH, required = false) Boolean passthrough,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_FIELDS, required = false) String fields) {
 
         EpoxyRequestDTO requestWrapper = EpoxyRequestDTO
                 .builder()
                 .base64ApisEncoded(apis)
                 .errorsType(errors)
                 .timeout(timeout)
+                .cache(cache)
+                .passthrough(passthrough)
+                .fields(fields)
                 .build();
 
         return epoxyService.combined(requestWrapper);
@@ -35,14 +49,121 @@ public class EpoxyController {
     @GetMapping(AppConstants.EPOXY_APPENDED_API)
     public CompletableFuture<List<Map<String,Object>>> appended(
             @PathVariable(AppConstants.REQUEST_PARAM_APIS) String apis,
-            @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors) {
+            @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_CACHE, required = false) Boolean cache,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_PASSTHROUGH, required = false) Boolean passthrough,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_FIELDS, required = false) String fields) {
 
         EpoxyRequestDTO requestWrapper = EpoxyRequestDTO
                 .builder()
                 .base64ApisEncoded(apis)
                 .errorsType(errors)
+                .timeout(timeout)
+                .cache(cache)
+                .passthrough(passthrough)
+                .fields(fields)
                 .build();
 
         return epoxyService.appended(requestWrapper);
     }
+
+    @PostMapping(value = AppConstants.EPOXY_BATCH_API, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<Object> batch(
+            @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_MODE, defaultValue = AppConstants.MODE_COMBINED) String mode,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_CACHE, required = false) Boolean cache,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_PASSTHROUGH, required = false) Boolean passthrough,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_FIELDS, required = false) String fields,
+            InputStream body) {
+
+        EpoxyRequestDTO requestWrapper = EpoxyRequestDTO
+                .builder()
+                .errorsType(errors)
+                .mode(mode)
+                .timeout(timeout)
+                .cache(cache)
+                .passthrough(passthrough)
+                .fields(fields)
+                .build();
+
+        return epoxyService.batch(requestWrapper, body);
+    }
+
+    @GetMapping(value = AppConstants.EPOXY_COMBINED_API, params = AppConstants.REQUEST_PARAM_STREAM + "=true")
+    public ResponseEntity<StreamingResponseBody> combinedStream(
+            @PathVariable(AppConstants.REQUEST_PARAM_APIS) String apis,
+            @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_CACHE, required = false) Boolean cache,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_PASSTHROUGH, required = false) Boolean passthrough,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_FIELDS, required = false) String fields) {
+
+        EpoxyRequestDTO requestWrapper = EpoxyRequestDTO
+                .builder()
+                .base64ApisEncoded(apis)
+                .errorsType(errors)
+                .timeout(timeout)
+                .cache(cache)
+                .passthrough(passthrough)
+                .fields(fields)
+                .build();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(epoxyService.streamCombined(requestWrapper));
+    }
+
+    @GetMapping(value = AppConstants.EPOXY_APPENDED_API, params = AppConstants.REQUEST_PARAM_STREAM + "=true")
+    public ResponseEntity<StreamingResponseBody> appendedStream(
+            @PathVariable(AppConstants.REQUEST_PARAM_APIS) String apis,
+            @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_CACHE, required = false) Boolean cache,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_PASSTHROUGH, required = false) Boolean passthrough,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_FIELDS, required = false) String fields,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_ORDER, required = false) String order) {
+
+        EpoxyRequestDTO requestWrapper = EpoxyRequestDTO
+                .builder()
+                .base64ApisEncoded(apis)
+                .errorsType(errors)
+                .timeout(timeout)
+                .cache(cache)
+                .passthrough(passthrough)
+                .fields(fields)
+                .order(order)
+                .build();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(epoxyService.streamAppended(requestWrapper));
+    }
+
+    @GetMapping(value = AppConstants.EPOXY_STREAM_API, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> events(
+            @PathVariable(AppConstants.REQUEST_PARAM_APIS) String apis,
+            @RequestParam(AppConstants.REQUEST_PARAM_ERRORS) String errors,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_TIMEOUT, required = false) Integer timeout,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_CACHE, required = false) Boolean cache,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_PASSTHROUGH, required = false) Boolean passthrough,
+            @RequestParam(value = AppConstants.REQUEST_PARAM_FIELDS, required = false) String fields) {
+
+        EpoxyRequestDTO requestWrapper = EpoxyRequestDTO
+                .builder()
+                .base64ApisEncoded(apis)
+                .errorsType(errors)
+                .timeout(timeout)
+                .cache(cache)
+                .passthrough(passthrough)
+                .fields(fields)
+                .build();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noCache())
+                .header(ACCEL_BUFFERING_HEADER, "no")
+                .body(epoxyService.streamEvents(requestWrapper));
+    }
 }
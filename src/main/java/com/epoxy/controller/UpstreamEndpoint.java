@@ -0,0 +1,66 @@
+package com.epoxy.controller;
+
+import com.epoxy.service.UpstreamCircuitBreakers;
+import com.epoxy.service.UpstreamLatencies;
+import com.epoxy.util.UpstreamAdmission;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Actuator endpoint (/actuator/upstream) with per-host state of the upstream layer.
+ * */
+@Component
+@Endpoint(id = "upstream")
+public class UpstreamEndpoint {
+
+    @Autowired
+    private PoolingHttpClientConnectionManager upstreamConnectionManager;
+
+    @Autowired
+    private UpstreamLatencies upstreamLatencies;
+
+    @Autowired
+    private UpstreamCircuitBreakers upstreamCircuitBreakers;
+
+    @Autowired
+    private UpstreamAdmission upstreamAdmission;
+
+    @ReadOperation
+    public Map<String, Object> upstream() {
+        Map<String, Object> upstream = new LinkedHashMap<>();
+        upstream.put("pool", pool());
+        upstream.put("admission", upstreamAdmission.snapshot());
+        upstream.put("latency", upstreamLatencies.snapshot());
+        upstream.put("circuitBreakers", upstreamCircuitBreakers.snapshot());
+        return upstream;
+    }
+
+    private Map<String, Object> pool() {
+        Map<String, Object> routes = new TreeMap<>();
+        for (HttpRoute route : upstreamConnectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), stats(upstreamConnectionManager.getStats(route)));
+        }
+
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("total", stats(upstreamConnectionManager.getTotalStats()));
+        pool.put("routes", routes);
+        return pool;
+    }
+
+    private Map<String, Integer> stats(PoolStats poolStats) {
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        stats.put("leased", poolStats.getLeased());
+        stats.put("pending", poolStats.getPending());
+        stats.put("available", poolStats.getAvailable());
+        stats.put("max", poolStats.getMax());
+        return stats;
+    }
+}
@@ -0,0 +1,29 @@
+package com.epoxy.model;
+
+import com.epoxy.util.Projection;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * One endpoint of a batch body: its URL and host (host:port), the key it is reported
+ * under (alias, the URL otherwise), its own timeout, its dispatch priority (higher first)
+ * and its own fields projection, used instead of the one of the request.
+ * */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BatchEntry {
+    private String url;
+    private String host;
+    private String alias;
+    private Integer timeout;
+    private int priority;
+    private Projection projection;
+
+    public String getKey() {
+        return alias != null ? alias : url;
+    }
+}
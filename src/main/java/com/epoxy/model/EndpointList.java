@@ -0,0 +1,27 @@
+package com.epoxy.model;
+
+import lombok.Value;
+import java.util.List;
+
+/*
+ * Decoded and validated {apis} segment: the endpoint URLs with their host (host:port), or
+ * the validation error when the segment is malformed.
+ * */
+@Value
+public class EndpointList {
+    List<String> urls;
+    List<String> hosts;
+    String error;
+
+    public static EndpointList valid(List<String> urls, List<String> hosts) {
+        return new EndpointList(List.copyOf(urls), List.copyOf(hosts), null);
+    }
+
+    public static EndpointList invalid(String error) {
+        return new EndpointList(null, null, error);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+}
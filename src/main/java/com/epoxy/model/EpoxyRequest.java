@@ -1,5 +1,6 @@
 package com.epoxy.model;
 
+import com.epoxy.util.Projection;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,6 +13,13 @@ import java.util.List;
 @Builder
 public class EpoxyRequest {
     private List<String> endpoints;
+    private List<String> hosts;
     private Integer timeout;
     private String errorsType;
+    @Builder.Default
+    private boolean cache = true;
+    private String order;
+    private boolean passthrough;
+    private String mode;
+    private Projection projection;
 }
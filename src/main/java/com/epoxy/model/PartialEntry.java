@@ -0,0 +1,22 @@
+package com.epoxy.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * One upstream entry of an errors=partial response: ok (with data), failed, or pending when
+ * it had not completed by the request deadline. latencyMs is measured from the start of the
+ * request and is absent for pending entries.
+ * */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PartialEntry {
+    private String status;
+    private Long latencyMs;
+    private JsonNode data;
+}
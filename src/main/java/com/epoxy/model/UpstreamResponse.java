@@ -0,0 +1,32 @@
+package com.epoxy.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UpstreamResponse {
+    private int statusCode;
+    private HttpHeaders headers;
+    private JsonNode jsonNode;
+    private long bodyBytes;
+
+    public boolean is2xxSuccessful() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    public boolean hasBody() {
+        return bodyBytes > 0;
+    }
+
+    public MediaType getContentType() {
+        return headers == null ? null : headers.getContentType();
+    }
+}
@@ -8,6 +8,8 @@ public class AppConstants {
     public static final String EPOXY_V1_BASE_API = "/v1/fetch/";
     public static final String EPOXY_COMBINED_API = "{apis}/combined";
     public static final String EPOXY_APPENDED_API = "{apis}/appended";
+    public static final String EPOXY_BATCH_API = "batch";
+    public static final String EPOXY_STREAM_API = "{apis}/stream";
 
     /*
      * Api Request Param Constants
@@ -15,12 +17,25 @@ public class AppConstants {
     public static final String REQUEST_PARAM_APIS = "apis";
     public static final String REQUEST_PARAM_ERRORS = "errors";
     public static final String REQUEST_PARAM_TIMEOUT = "timeout";
+    public static final String REQUEST_PARAM_CACHE = "cache";
+    public static final String REQUEST_PARAM_STREAM = "stream";
+    public static final String REQUEST_PARAM_ORDER = "order";
+    public static final String REQUEST_PARAM_PASSTHROUGH = "passthrough";
+    public static final String REQUEST_PARAM_MODE = "mode";
+    public static final String REQUEST_PARAM_FIELDS = "fields";
 
     /*
      * Api Error Messages
      * */
     public static final String INCORRECT_BASE64 = "Incorrect Encoded Base64 URI";
-    public static final String INVALID_ERROR_TYPE = "Invalid Error Type [fail_any,replace]";
+    public static final String INVALID_ERROR_TYPE = "Invalid Error Type [fail_any,replace,partial]";
+    public static final String INVALID_ORDER = "Invalid Order [input,completion]";
+    public static final String INVALID_ENDPOINT = "Invalid Endpoint URL, expected absolute http(s) URLs";
+    public static final String INVALID_MODE = "Invalid Mode [combined,appended]";
+    public static final String INVALID_FIELDS = "Invalid Fields, expected comma separated JSON Pointers or $.a.b[0][*] paths";
+    public static final String INVALID_BATCH = "Invalid Batch Body, expected a JSON array of {url,timeout,alias,priority,fields} entries with distinct aliases (or urls)";
+    public static final String BATCH_TOO_LARGE = "Batch Body exceeds the maximum number of entries";
+    public static final String TOO_MANY_REQUESTS = "Too Many Requests, upstream budget exhausted";
     public static final String API_FAILED = "failed";
 
     /*
@@ -28,6 +43,27 @@ public class AppConstants {
      * */
     public static final String ERROR_FAIL_ANY = "fail_any";
     public static final String ERROR_REPLACE = "replace";
+    public static final String ERROR_PARTIAL = "partial";
+
+    /*
+     * Partial and Stream Entry Status
+     * */
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_CANCELLED = "cancelled";
+
+    /*
+     * Streamed Entry Order
+     * */
+    public static final String ORDER_INPUT = "input";
+    public static final String ORDER_COMPLETION = "completion";
+
+    /*
+     * Batch Aggregation Mode
+     * */
+    public static final String MODE_COMBINED = "combined";
+    public static final String MODE_APPENDED = "appended";
 
     /*
     * Default Timeout
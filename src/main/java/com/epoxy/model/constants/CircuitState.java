@@ -0,0 +1,7 @@
+package com.epoxy.model.constants;
+
+public enum CircuitState {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+}
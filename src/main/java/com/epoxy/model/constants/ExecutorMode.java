@@ -0,0 +1,6 @@
+package com.epoxy.model.constants;
+
+public enum ExecutorMode {
+    BOUNDED,
+    VIRTUAL
+}
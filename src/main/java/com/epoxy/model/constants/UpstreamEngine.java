@@ -0,0 +1,6 @@
+package com.epoxy.model.constants;
+
+public enum UpstreamEngine {
+    REST_TEMPLATE,
+    HTTP_CLIENT
+}
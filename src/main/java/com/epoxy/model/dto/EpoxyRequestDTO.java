@@ -13,4 +13,9 @@ public class EpoxyRequestDTO {
     private String base64ApisEncoded;
     private String errorsType;
     private Integer timeout;
+    private Boolean cache;
+    private String order;
+    private Boolean passthrough;
+    private String mode;
+    private String fields;
 }
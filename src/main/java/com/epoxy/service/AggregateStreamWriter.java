@@ -0,0 +1,140 @@
+package com.epoxy.service;
+
+import com.epoxy.model.EpoxyRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import static com.epoxy.model.constants.AppConstants.API_FAILED;
+import static com.epoxy.model.constants.AppConstants.ORDER_INPUT;
+
+/*
+ * Writes the combined/appended document entry by entry as upstream fetches complete,
+ * flushing after each one. Nothing is written until the first entry is available, so a
+ * fail_any failure before that still produces the regular error response; a failure
+ * after the first flush aborts the already committed response.
+ * */
+@Component
+public class AggregateStreamWriter {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void writeCombined(OutputStream outputStream, EpoxyRequest request, List<CompletableFuture<JsonNode>> futures) throws IOException {
+        write(outputStream, request, futures, true, false);
+    }
+
+    public void writeAppended(OutputStream outputStream, EpoxyRequest request, List<CompletableFuture<JsonNode>> futures) throws IOException {
+        write(outputStream, request, futures, false, ORDER_INPUT.equals(request.getOrder()));
+    }
+
+    private void write(OutputStream outputStream, EpoxyRequest request, List<CompletableFuture<JsonNode>> futures,
+                       boolean combined, boolean inputOrder) throws IOException {
+        BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            futures.get(i).whenComplete((jsonNode, ex) -> completed.add(index));
+        }
+
+        Set<String> written = new HashSet<>();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            boolean started = false;
+            for (int i = 0; i < futures.size(); i++) {
+                int index = inputOrder ? i : nextCompleted(completed);
+                JsonNode jsonNode = join(futures.get(index), futures);
+                String url = request.getEndpoints().get(index);
+
+                if (!started) {
+                    writeStart(generator, combined);
+                    started = true;
+                }
+                if (combined) {
+                    if (!written.add(url)) {
+                        continue;
+                    }
+                    writeEntry(generator, url, jsonNode);
+                }
+                else {
+                    generator.writeStartObject();
+                    writeEntry(generator, url, jsonNode);
+                    generator.writeEndObject();
+                }
+                generator.flush();
+            }
+
+            if (!started) {
+                writeStart(generator, combined);
+            }
+            if (combined) {
+                generator.writeEndObject();
+            }
+            else {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    private void writeStart(JsonGenerator generator, boolean combined) throws IOException {
+        if (combined) {
+            generator.writeStartObject();
+        }
+        else {
+            generator.writeStartArray();
+        }
+    }
+
+    private void writeEntry(JsonGenerator generator, String url, JsonNode jsonNode) throws IOException {
+        generator.writeFieldName(url);
+        if (jsonNode == null) {
+            generator.writeString(API_FAILED);
+        }
+        else {
+            generator.writeTree(jsonNode);
+        }
+    }
+
+    /*
+     * A sibling cancelled by the first fail_any failure reports that failure, not the cancellation.
+     * */
+    private JsonNode join(CompletableFuture<JsonNode> future, List<CompletableFuture<JsonNode>> futures) {
+        try {
+            return future.join();
+        }
+        catch (CancellationException e) {
+            futures.stream()
+                    .filter(sibling -> sibling.isCompletedExceptionally() && !sibling.isCancelled())
+                    .findFirst()
+                    .ifPresent(failed -> join(failed, futures));
+            throw e;
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private int nextCompleted(BlockingQueue<Integer> completed) {
+        try {
+            return completed.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.epoxy.service;
+
+import com.epoxy.config.exceptions.CircuitOpenException;
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.CircuitBreaker;
+import com.epoxy.util.Deadline;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Guards every upstream call with the breaker of its host. While the breaker is open the
+ * call fails right away, without a thread or connection, and the fetch ends up in the
+ * usual replace/fail_any handling. Exceptions, 5xx responses and calls cut off at the
+ * request deadline count as failures; calls cancelled for any other reason are not counted.
+ * */
+public class CircuitBreakingUpstreamClient implements UpstreamClient {
+
+    private final UpstreamClient delegate;
+    private final UpstreamCircuitBreakers upstreamCircuitBreakers;
+
+    public CircuitBreakingUpstreamClient(UpstreamClient delegate, UpstreamCircuitBreakers upstreamCircuitBreakers) {
+        this.delegate = delegate;
+        this.upstreamCircuitBreakers = upstreamCircuitBreakers;
+    }
+
+    @Override
+    public CompletableFuture<UpstreamResponse> get(String url, Deadline deadline, UpstreamBodyReader bodyReader) {
+        String host = UpstreamLatencies.host(url);
+        CircuitBreaker breaker = upstreamCircuitBreakers.forHost(host);
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException("Circuit open for upstream host " + host));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<UpstreamResponse> call = delegate.get(url, deadline, bodyReader);
+        call.whenComplete((response, ex) -> {
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (call.isCancelled() && !Cancellation.atDeadline()) {
+                breaker.onIgnored();
+            }
+            else if (ex != null || response.getStatusCode() >= 500) {
+                breaker.onFailure(durationMs);
+            }
+            else {
+                breaker.onSuccess(durationMs);
+            }
+        });
+        return call;
+    }
+}
@@ -1,87 +1,539 @@
 package com.epoxy.service;
 
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.config.exceptions.UpstreamCallException;
+import com.epoxy.model.BatchEntry;
 import com.epoxy.model.EpoxyRequest;
+import com.epoxy.model.PartialEntry;
+import com.epoxy.model.UpstreamResponse;
 import com.epoxy.model.dto.EpoxyRequestDTO;
+import com.epoxy.util.BatchDispatcher;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.CountingOutputStream;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.Projection;
+import com.epoxy.util.SingleFlight;
+import com.epoxy.util.UpstreamAdmission;
 import com.epoxy.util.Util;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.InputStream;
 import java.util.*;
 import java.util.stream.IntStream;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
 import static com.epoxy.model.constants.AppConstants.API_FAILED;
+import static com.epoxy.model.constants.AppConstants.ERROR_FAIL_ANY;
+import static com.epoxy.model.constants.AppConstants.ERROR_PARTIAL;
+import static com.epoxy.model.constants.AppConstants.MODE_APPENDED;
+import static com.epoxy.model.constants.AppConstants.STATUS_FAILED;
+import static com.epoxy.model.constants.AppConstants.STATUS_OK;
+import static com.epoxy.model.constants.AppConstants.STATUS_PENDING;
+import static com.epoxy.model.constants.AppConstants.TIME_OUT;
 
 @Service
 public class EpoxyService {
+    private static final String PASSTHROUGH_KEY_PREFIX = "passthrough:";
+    private static final String FIELDS_KEY_SEPARATOR = " fields:";
+
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamClient upstreamClient;
 
     @Autowired
     private Util util;
 
+    @Autowired
+    private UpstreamResponseCache responseCache;
+
+    @Autowired
+    private SingleFlight<String, JsonNode> upstreamSingleFlight;
+
+    @Autowired
+    private AggregateStreamWriter aggregateStreamWriter;
+
+    @Autowired
+    private PassthroughBodyReader passthroughBodyReader;
+
+    @Autowired
+    private ServerSentEventWriter serverSentEventWriter;
+
+    @Autowired(required = false)
+    private SharedResponseCache sharedResponseCache;
+
+    @Autowired
+    private UpstreamLatencies upstreamLatencies;
+
+    @Autowired
+    private FetchMetrics fetchMetrics;
+
+    @Autowired
+    private EpoxyProperties epoxyProperties;
+
+    @Autowired
+    private UpstreamAdmission upstreamAdmission;
+
     public CompletableFuture<JsonNode> fetchDataFromApi(String url, String errorsType) {
-        return CompletableFuture.supplyAsync(() -> {
-            ResponseEntity<String> response = null;
+        EpoxyRequest request = EpoxyRequest.builder().errorsType(errorsType).timeout(TIME_OUT).build();
+        return fetchDataFromApi(url, request, Deadline.after(TIME_OUT));
+    }
 
-            try {
-                response = restTemplate.getForEntity(url, String.class);
+    /*
+     * A cached payload past its lifetime but within its stale-while-revalidate window is
+     * returned right away while one background fetch (shared through the single flight)
+     * refreshes it. Failed fetches fall back to a payload within its stale-if-error window.
+     * */
+    public CompletableFuture<JsonNode> fetchDataFromApi(String url, EpoxyRequest request, Deadline deadline) {
+        return fetchDataFromApi(url, request, request.getProjection(), deadline);
+    }
 
-                if(!response.getStatusCode().is2xxSuccessful() || response.getBody() == null){
-                    return util.isSuccessFullApiCall(errorsType);
-                }
+    public CompletableFuture<JsonNode> fetchDataFromApi(String url, EpoxyRequest request, Projection projection, Deadline deadline) {
+        String payloadKey = payloadKey(url, request, projection);
+        UpstreamBodyReader bodyReader = bodyReader(request, projection);
+        if (request.isCache()) {
+            UpstreamResponseCache.CachedResponse cached = responseCache.lookup(payloadKey);
+            if (cached != null && cached.isFresh()) {
+                return CompletableFuture.completedFuture(cached.getJsonNode());
             }
-            catch (Exception e){
-                return util.isSuccessFullApiCall(errorsType);
+            if (cached != null && cached.isRevalidatable()) {
+                responseCache.staleServed();
+                revalidate(url, payloadKey, bodyReader);
+                return CompletableFuture.completedFuture(cached.getJsonNode());
             }
+        }
 
-            return util.parseApiResponse(response.getBody(),response.getHeaders().getContentType());
+        Deadline loadDeadline = loadDeadline(deadline);
+        CompletableFuture<JsonNode> load = upstreamSingleFlight.load(payloadKey, key -> loadFromApi(url, key, bodyReader, loadDeadline, request.isCache()));
+        CompletableFuture<JsonNode> future = load
+                .handle((jsonNode, ex) -> ex == null || load.isCancelled() ? jsonNode : fallback(payloadKey, request));
+        return Cancellation.propagate(withinDeadline(future, load, payloadKey, request, deadline), load);
+    }
+
+    /*
+     * The load may be shared with callers joining later with a longer deadline, so it is not cut
+     * off at the leading caller's: it runs up to epoxy.single-flight.max-load-ms, or the caller's
+     * deadline when that is later. Callers leave it at their own deadline (withinDeadline), and
+     * once the last one has left, the load and its upstream call are cancelled.
+     * */
+    private Deadline loadDeadline(Deadline deadline) {
+        long maxLoadMs = epoxyProperties.getSingleFlight().getMaxLoadMs();
+        return deadline.remainingMillis() >= maxLoadMs ? deadline : Deadline.after(maxLoadMs);
+    }
+
+    private void revalidate(String url, String payloadKey, UpstreamBodyReader bodyReader) {
+        Deadline deadline = Deadline.after(upstreamLatencies.adaptiveTimeout(url));
+        upstreamSingleFlight.load(payloadKey, key -> loadFromApi(url, key, bodyReader, deadline, true));
+    }
+
+    /*
+     * Stand-in for a failed fetch: the last good payload unless the request is fail_any
+     * (or opted out of the cache), else the usual API_FAILED / ApiFailedException.
+     * */
+    private JsonNode fallback(String payloadKey, EpoxyRequest request) {
+        if (request.isCache() && !ERROR_FAIL_ANY.equals(request.getErrorsType())) {
+            JsonNode stale = responseCache.staleIfError(payloadKey);
+            if (stale != null) {
+                return stale;
+            }
+        }
+        return util.isSuccessFullApiCall(request.getErrorsType());
+    }
+
+    /*
+     * Fetch whose deadline passed while it waited for a slot or a permit: handled like one
+     * that timed out, without calling the upstream.
+     * */
+    private JsonNode expired(String url, EpoxyRequest request, Projection projection) {
+        return fallback(payloadKey(url, request, projection), request);
+    }
+
+    /*
+     * Upstream GET and parse, completing exceptionally when the call fails. Concurrent
+     * fetches of the same URL share this load, see loadDeadline.
+     * With the shared cache, a payload another instance fetched is taken from it first (and
+     * kept in the local cache for what is left of its lifetime, with the stale windows of the response);
+     * only a miss goes upstream.
+     * */
+    private CompletableFuture<JsonNode> loadFromApi(String url, String payloadKey, UpstreamBodyReader bodyReader, Deadline deadline,
+                                                    boolean lookupShared) {
+        if (sharedResponseCache == null || !lookupShared) {
+            return fetchFromApi(url, payloadKey, bodyReader, deadline);
+        }
+        CompletableFuture<JsonNode> load = new CompletableFuture<>();
+        sharedResponseCache.get(payloadKey).whenComplete((hit, ex) -> {
+            if (hit != null) {
+                responseCache.put(payloadKey, hit.getJsonNode(), hit.getTtl(), hit.getStaleWhileRevalidate(), hit.getStaleIfError(), hit.getBytes());
+                load.complete(hit.getJsonNode());
+            }
+            else if (!load.isDone()) {
+                CompletableFuture<JsonNode> fetch = fetchFromApi(url, payloadKey, bodyReader, deadline);
+                Cancellation.propagate(load, fetch);
+                fetch.whenComplete((jsonNode, fetchEx) -> {
+                    if (fetchEx == null) {
+                        load.complete(jsonNode);
+                    }
+                    else {
+                        load.completeExceptionally(fetchEx);
+                    }
+                });
+            }
         });
+        return load;
+    }
+
+    private CompletableFuture<JsonNode> fetchFromApi(String url, String payloadKey, UpstreamBodyReader bodyReader, Deadline deadline) {
+        CompletableFuture<UpstreamResponse> call = upstreamClient.get(url, deadline, bodyReader);
+        return Cancellation.propagate(call.thenApply(response -> {
+                    if (!response.is2xxSuccessful() || !response.hasBody()) {
+                        throw new UpstreamCallException("Upstream " + url + " responded with status " + response.getStatusCode());
+                    }
+                    responseCache.put(payloadKey, response.getJsonNode(), response.getHeaders(), response.getBodyBytes());
+                    if (sharedResponseCache != null) {
+                        sharedResponseCache.put(payloadKey, response.getJsonNode(), response.getHeaders());
+                    }
+                    return response.getJsonNode();
+                }), call);
+    }
+
+    private UpstreamBodyReader bodyReader(EpoxyRequest request, Projection projection) {
+        if (projection == null) {
+            return request.isPassthrough() ? passthroughBodyReader : util::parseApiResponse;
+        }
+        return request.isPassthrough()
+                ? (body, contentType) -> passthroughBodyReader.read(body, contentType, projection)
+                : (body, contentType) -> util.parseApiResponse(body, contentType, projection);
+    }
+
+    /*
+     * Cache and single-flight key: the URL, qualified when the payload is not the parsed tree
+     * of the whole body (passthrough bytes, or only the projected fields).
+     * */
+    private String payloadKey(String url, EpoxyRequest request, Projection projection) {
+        String key = request.isPassthrough() ? PASSTHROUGH_KEY_PREFIX + url : url;
+        return projection == null ? key : key + FIELDS_KEY_SEPARATOR + projection.key();
+    }
+
+    /*
+     * Cuts the fetch off at the request deadline even when the socket is still
+     * trickling data, and reports it like any other failed upstream call. The caller
+     * leaves the shared load then, which cancels it unless another caller still waits.
+     * */
+    private CompletableFuture<JsonNode> withinDeadline(CompletableFuture<JsonNode> future, CompletableFuture<JsonNode> load,
+                                                       String payloadKey, EpoxyRequest request, Deadline deadline) {
+        return future
+                .orTimeout(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS)
+                .handle((jsonNode, ex) -> {
+                    if (ex == null) {
+                        return jsonNode;
+                    }
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof TimeoutException) {
+                        Cancellation.cancelAtDeadline(load);
+                        return fallback(payloadKey, request);
+                    }
+                    throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                });
+    }
+
+    /*
+     * A fetch only fails (rather than completing with null) when the request is fail_any, and
+     * then the aggregate has already failed: the first failure cancels every sibling still in
+     * flight, which aborts their upstream calls unless another request is waiting on them too.
+     * Without a timeout on the request, every fetch gets the adaptive timeout of its host.
+     * At most epoxy.admission.request-width fetches of the request run at once, each holding
+     * a permit of the global upstream budget. Under partial the request deadline only cuts the
+     * response off: fetches keep their own (longer) deadline and late results fill the cache.
+     * */
+    public List<CompletableFuture<JsonNode>> fetchEachDataFromApis(EpoxyRequest epoxyRequest) {
+        upstreamAdmission.admit();
+        boolean partial = ERROR_PARTIAL.equals(epoxyRequest.getErrorsType());
+        Deadline deadline = epoxyRequest.getTimeout() == null || partial ? null : Deadline.after(epoxyRequest.getTimeout());
+
+        BatchDispatcher<String, JsonNode> dispatcher = new BatchDispatcher<>(
+                epoxyProperties.getAdmission().getRequestWidth(),
+                upstreamAdmission,
+                endpoint -> 0,
+                endpoint -> deadline != null ? deadline : Deadline.after(fetchTimeout(endpoint, epoxyRequest, partial)),
+                (endpoint, fetchDeadline) -> fetchDataFromApi(endpoint, epoxyRequest, fetchDeadline),
+                endpoint -> expired(endpoint, epoxyRequest, epoxyRequest.getProjection()));
+        List<CompletableFuture<JsonNode>> futures = dispatcher.enqueue(epoxyRequest.getEndpoints());
+        failFast(futures, hosts(epoxyRequest));
+        dispatcher.start();
+        return futures;
+    }
+
+    private long fetchTimeout(String endpoint, EpoxyRequest epoxyRequest, boolean partial) {
+        if (partial) {
+            return Math.max(epoxyProperties.getPartial().getFetchTimeoutMs(), partialTimeout(epoxyRequest));
+        }
+        return upstreamLatencies.adaptiveTimeout(endpoint);
+    }
+
+    private int partialTimeout(EpoxyRequest epoxyRequest) {
+        return epoxyRequest.getTimeout() != null ? epoxyRequest.getTimeout() : TIME_OUT;
+    }
+
+    /*
+     * Completes at the request deadline at the latest, with the state of every fetch at that
+     * point. Fetches still running are reported pending and left to finish in the background.
+     * */
+    private CompletableFuture<List<PartialEntry>> partial(List<CompletableFuture<JsonNode>> futures, List<String> hosts,
+                                                          long startNanos, int timeoutMs) {
+        AtomicLongArray latencies = new AtomicLongArray(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            futures.get(i).whenComplete((jsonNode, ex) -> latencies.set(index, System.nanoTime() - startNanos));
+        }
+        long remainingMs = Math.max(0, timeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .completeOnTimeout(null, remainingMs, TimeUnit.MILLISECONDS)
+                .handle((ignored, ex) -> {
+                    List<PartialEntry> entries = new ArrayList<>(futures.size());
+                    for (int i = 0; i < futures.size(); i++) {
+                        CompletableFuture<JsonNode> future = futures.get(i);
+                        if (!future.isDone()) {
+                            fetchMetrics.apiPending(hosts.get(i));
+                            entries.add(new PartialEntry(STATUS_PENDING, null, null));
+                            continue;
+                        }
+                        JsonNode jsonNode = future.isCompletedExceptionally() ? null : future.join();
+                        long latencyNanos = latencies.get(i) > 0 ? latencies.get(i) : System.nanoTime() - startNanos;
+                        entries.add(new PartialEntry(jsonNode == null ? STATUS_FAILED : STATUS_OK,
+                                TimeUnit.NANOSECONDS.toMillis(latencyNanos), jsonNode));
+                    }
+                    return entries;
+                });
+    }
+
+    private List<String> hosts(EpoxyRequest epoxyRequest) {
+        return epoxyRequest.getHosts() != null
+                ? epoxyRequest.getHosts()
+                : epoxyRequest.getEndpoints().stream().map(UpstreamLatencies::host).collect(Collectors.toList());
+    }
+
+    private void failFast(List<CompletableFuture<JsonNode>> futures, List<String> hosts) {
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<JsonNode> future = futures.get(i);
+            String host = hosts.get(i);
+            future.whenComplete((jsonNode, ex) -> {
+                if (ex == null && jsonNode == null) {
+                    fetchMetrics.apiFailed(host);
+                }
+                if (ex != null && !future.isCancelled()) {
+                    futures.forEach(sibling -> sibling.cancel(true));
+                }
+            });
+        }
     }
 
     public CompletableFuture<List<JsonNode>> fetchAllDataFromApis(EpoxyRequest epoxyRequest) {
-        util.setRestTemplateTimeout(epoxyRequest.getTimeout(),restTemplate);
+        return allOf(fetchEachDataFromApis(epoxyRequest));
+    }
 
-        List<CompletableFuture<JsonNode>> futures = epoxyRequest.getEndpoints().stream()
-                .map(endpoint -> fetchDataFromApi(endpoint, epoxyRequest.getErrorsType()))
-                .collect(Collectors.toList());
+    private CompletableFuture<List<JsonNode>> allOf(List<CompletableFuture<JsonNode>> futures) {
+        CompletableFuture<List<JsonNode>> all = new CompletableFuture<>();
+        /* fail with the first failure instead of waiting for allOf, which would also report a cancelled sibling;
+           the siblings are cancelled first, so their upstream calls are aborted by the time the caller sees it */
+        futures.forEach(future -> future.whenComplete((jsonNode, ex) -> {
+            if (ex != null && !future.isCancelled()) {
+                futures.forEach(sibling -> sibling.cancel(true));
+                all.completeExceptionally(unwrap(ex));
+            }
+        }));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, ex) -> {
+            if (ex == null) {
+                all.complete(futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+            }
+            else if (!anyFailed(futures)) {
+                /* a failure is left to the hook above, which may still be cancelling: allOf completes with the last sibling cancelled */
+                all.completeExceptionally(unwrap(ex));
+            }
+        });
+        return all;
+    }
 
-        CompletableFuture<Void> allOf = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    private static boolean anyFailed(List<CompletableFuture<JsonNode>> futures) {
+        return futures.stream().anyMatch(future -> future.isCompletedExceptionally() && !future.isCancelled());
+    }
 
-        return allOf.thenApply(ignored -> futures.stream()
-                        .map(CompletableFuture::join)
-                        .collect(Collectors.toList())).thenApply(list ->list);
+    private Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
     }
 
     public CompletableFuture<Map<String, Object>> combined(EpoxyRequestDTO requestDTO) {
-        EpoxyRequest request = util.validateRequest(requestDTO);
-        return fetchAllDataFromApis(request).thenApply(jsonNodeList -> {
-                Map<String, Object> combinedJsonObjects = IntStream.range(0, jsonNodeList.size())
-                        .boxed()
-                        .collect(Collectors.toMap(
-                                i -> request.getEndpoints().get(i),
-                                i -> jsonNodeList.get(i) == null ? API_FAILED : jsonNodeList.get(i)
-                        ));
-                return combinedJsonObjects;
-            });
+        EpoxyRequest request = validateRequest(requestDTO);
+        if (ERROR_PARTIAL.equals(request.getErrorsType())) {
+            long startNanos = System.nanoTime();
+            return partial(fetchEachDataFromApis(request), hosts(request), startNanos, partialTimeout(request))
+                    .thenApply(entries -> fetchMetrics.timeAssemble(FetchMetrics.MODE_COMBINED,
+                            () -> combinePartial(request.getEndpoints(), entries)));
+        }
+        return fetchAllDataFromApis(request).thenApply(jsonNodeList ->
+                fetchMetrics.timeAssemble(FetchMetrics.MODE_COMBINED, () -> combine(request.getEndpoints(), jsonNodeList)));
     }
 
     public CompletableFuture<List<Map<String,Object>>> appended(EpoxyRequestDTO requestDTO) {
-        EpoxyRequest request = util.validateRequest(requestDTO);
-
-        return fetchAllDataFromApis(request).thenApply(jsonNodeList->{
-            List<Map<String,Object>> appendedJsonObjects = IntStream.range(0, jsonNodeList.size())
-                    .mapToObj(i -> {
-                        Map<String, Object> jsonNodeMap = new LinkedHashMap<>();
-                        JsonNode apiJsonNode = jsonNodeList.get(i);
-                        jsonNodeMap.put(request.getEndpoints().get(i), apiJsonNode == null ? API_FAILED : apiJsonNode);
-                        return jsonNodeMap;
-                    })
-                    .collect(Collectors.toList());
-
-            return appendedJsonObjects;
-        });
+        EpoxyRequest request = validateRequest(requestDTO);
+        if (ERROR_PARTIAL.equals(request.getErrorsType())) {
+            long startNanos = System.nanoTime();
+            return partial(fetchEachDataFromApis(request), hosts(request), startNanos, partialTimeout(request))
+                    .thenApply(entries -> fetchMetrics.timeAssemble(FetchMetrics.MODE_APPENDED,
+                            () -> appendPartial(request.getEndpoints(), entries)));
+        }
+        return fetchAllDataFromApis(request).thenApply(jsonNodeList ->
+                fetchMetrics.timeAssemble(FetchMetrics.MODE_APPENDED, () -> append(request.getEndpoints(), jsonNodeList)));
+    }
+
+    /*
+     * Entries of the body are fetched with at most epoxy.batch.max-concurrency upstream calls
+     * in flight, highest priority first. An entry timeout starts when the entry is queued, so
+     * an entry stuck behind others (or waiting for an upstream permit) times out like a slow
+     * fetch, without an upstream call. The fields of an entry replace the fields of the request.
+     * */
+    public CompletableFuture<Object> batch(EpoxyRequestDTO requestDTO, InputStream body) {
+        EpoxyRequest request = validateRequest(requestDTO);
+        List<BatchEntry> entries = util.readBatchEntries(body, epoxyProperties.getBatch().getMaxEntries());
+        upstreamAdmission.admit();
+
+        BatchDispatcher<BatchEntry, JsonNode> dispatcher = new BatchDispatcher<>(
+                epoxyProperties.getBatch().getMaxConcurrency(),
+                upstreamAdmission,
+                BatchEntry::getPriority,
+                entry -> batchDeadline(entry, request),
+                (entry, fetchDeadline) -> fetchDataFromApi(entry.getUrl(), request, projection(entry, request), fetchDeadline),
+                entry -> expired(entry.getUrl(), request, projection(entry, request)));
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<JsonNode>> futures = dispatcher.enqueue(entries);
+        List<String> hosts = entries.stream().map(BatchEntry::getHost).collect(Collectors.toList());
+        failFast(futures, hosts);
+        dispatcher.start();
+
+        List<String> keys = entries.stream().map(BatchEntry::getKey).collect(Collectors.toList());
+        if (ERROR_PARTIAL.equals(request.getErrorsType())) {
+            return partial(futures, hosts, startNanos, partialTimeout(request)).thenApply(partialEntries -> MODE_APPENDED.equals(request.getMode())
+                    ? fetchMetrics.timeAssemble(FetchMetrics.MODE_APPENDED, () -> appendPartial(keys, partialEntries))
+                    : fetchMetrics.timeAssemble(FetchMetrics.MODE_COMBINED, () -> combinePartial(keys, partialEntries)));
+        }
+        if (MODE_APPENDED.equals(request.getMode())) {
+            return allOf(futures).thenApply(jsonNodeList ->
+                    fetchMetrics.timeAssemble(FetchMetrics.MODE_APPENDED, () -> append(keys, jsonNodeList)));
+        }
+        return allOf(futures).thenApply(jsonNodeList ->
+                fetchMetrics.timeAssemble(FetchMetrics.MODE_COMBINED, () -> combine(keys, jsonNodeList)));
+    }
+
+    private Projection projection(BatchEntry entry, EpoxyRequest request) {
+        return entry.getProjection() != null ? entry.getProjection() : request.getProjection();
+    }
+
+    private Deadline batchDeadline(BatchEntry entry, EpoxyRequest request) {
+        if (entry.getTimeout() != null) {
+            return Deadline.after(entry.getTimeout());
+        }
+        if (ERROR_PARTIAL.equals(request.getErrorsType())) {
+            return Deadline.after(fetchTimeout(entry.getUrl(), request, true));
+        }
+        if (request.getTimeout() != null) {
+            return Deadline.after(request.getTimeout());
+        }
+        return Deadline.after(upstreamLatencies.adaptiveTimeout(entry.getUrl()));
+    }
+
+    public Map<String, Object> combine(List<String> endpoints, List<JsonNode> jsonNodeList) {
+        Map<String, Object> combinedJsonObjects = IntStream.range(0, jsonNodeList.size())
+                .boxed()
+                .collect(Collectors.toMap(
+                        i -> endpoints.get(i),
+                        i -> jsonNodeList.get(i) == null ? API_FAILED : jsonNodeList.get(i),
+                        (first, duplicate) -> first
+                ));
+        return combinedJsonObjects;
+    }
+
+    public List<Map<String,Object>> append(List<String> endpoints, List<JsonNode> jsonNodeList) {
+        List<Map<String,Object>> appendedJsonObjects = IntStream.range(0, jsonNodeList.size())
+                .mapToObj(i -> {
+                    Map<String, Object> jsonNodeMap = new LinkedHashMap<>();
+                    JsonNode apiJsonNode = jsonNodeList.get(i);
+                    jsonNodeMap.put(endpoints.get(i), apiJsonNode == null ? API_FAILED : apiJsonNode);
+                    return jsonNodeMap;
+                })
+                .collect(Collectors.toList());
+        return appendedJsonObjects;
+    }
+
+    private Map<String, Object> combinePartial(List<String> endpoints, List<PartialEntry> entries) {
+        Map<String, Object> combinedEntries = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            combinedEntries.putIfAbsent(endpoints.get(i), entries.get(i));
+        }
+        return combinedEntries;
+    }
+
+    private List<Map<String,Object>> appendPartial(List<String> endpoints, List<PartialEntry> entries) {
+        List<Map<String,Object>> appendedEntries = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Map<String, Object> entryMap = new LinkedHashMap<>();
+            entryMap.put(endpoints.get(i), entries.get(i));
+            appendedEntries.add(entryMap);
+        }
+        return appendedEntries;
+    }
+
+    public StreamingResponseBody streamCombined(EpoxyRequestDTO requestDTO) {
+        EpoxyRequest request = validateRequest(requestDTO);
+        List<CompletableFuture<JsonNode>> futures = fetchEachDataFromApis(request);
+        return outputStream -> {
+            CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+            try {
+                aggregateStreamWriter.writeCombined(countingStream, request, futures);
+            }
+            finally {
+                fetchMetrics.recordBytesOut(countingStream.getCount());
+            }
+        };
+    }
+
+    public StreamingResponseBody streamAppended(EpoxyRequestDTO requestDTO) {
+        EpoxyRequest request = validateRequest(requestDTO);
+        List<CompletableFuture<JsonNode>> futures = fetchEachDataFromApis(request);
+        return outputStream -> {
+            CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+            try {
+                aggregateStreamWriter.writeAppended(countingStream, request, futures);
+            }
+            finally {
+                fetchMetrics.recordBytesOut(countingStream.getCount());
+            }
+        };
+    }
+
+    /*
+     * Under partial the stream ends at the request deadline; otherwise once every fetch is done,
+     * each bounded by its own deadline as for the other endpoints.
+     * */
+    public StreamingResponseBody streamEvents(EpoxyRequestDTO requestDTO) {
+        EpoxyRequest request = validateRequest(requestDTO);
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<JsonNode>> futures = fetchEachDataFromApis(request);
+        Deadline deadline = ERROR_PARTIAL.equals(request.getErrorsType()) ? Deadline.after(partialTimeout(request)) : null;
+        return outputStream -> {
+            CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+            try {
+                serverSentEventWriter.write(countingStream, request, futures, startNanos, deadline);
+            }
+            finally {
+                fetchMetrics.recordBytesOut(countingStream.getCount());
+            }
+        };
+    }
+
+    private EpoxyRequest validateRequest(EpoxyRequestDTO requestDTO) {
+        return fetchMetrics.timeValidate(() -> util.validateRequest(requestDTO));
     }
 }
@@ -0,0 +1,149 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.HostTags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Timers (with percentile histograms) for each stage of a fan-out request and the payload
+ * counters around it:
+ *  epoxy.request.validate{outcome}                      base64 decode + endpoint list parse
+ *  epoxy.fetch.executor.queue.wait                      see UpstreamExecutor
+ *  epoxy.upstream.request{host,content_type,outcome}    upstream round-trip including the parse
+ *  epoxy.upstream.parse{host,content_type,outcome}      XML/JSON parse of the body
+ *  epoxy.response.assemble{mode}                        combined/appended map assembly
+ *  epoxy.response.serialize{outcome}                    JSON serialization of the response
+ *  epoxy.upstream.bytes.in{host}, epoxy.response.bytes.out, epoxy.api.failed{host}
+ * Past epoxy.metrics.max-host-tags distinct hosts, the host tag is "other". The content type
+ * an upstream declares is just as open-ended, so its tag is json, xml, other or none.
+ * */
+@Component
+public class FetchMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+    public static final String MODE_COMBINED = "combined";
+    public static final String MODE_APPENDED = "appended";
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_SMILE = "smile";
+    public static final String FORMAT_CBOR = "cbor";
+    private static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final HostTags hostTags;
+    private final Counter bytesOut;
+
+    public FetchMetrics(MeterRegistry meterRegistry) {
+        this(meterRegistry, new EpoxyProperties());
+    }
+
+    @Autowired
+    public FetchMetrics(MeterRegistry meterRegistry, EpoxyProperties epoxyProperties) {
+        this.meterRegistry = meterRegistry;
+        this.hostTags = new HostTags(epoxyProperties.getMetrics().getMaxHostTags());
+        this.bytesOut = Counter.builder("epoxy.response.bytes.out")
+                .description("Response body bytes written to clients")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public <T> T timeValidate(Supplier<T> validation) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = validation.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        }
+        finally {
+            timer("epoxy.request.validate", "Request validation: base64 decode and endpoint list parse",
+                    "outcome", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <T> T timeAssemble(String mode, Supplier<T> assembly) {
+        long start = System.nanoTime();
+        try {
+            return assembly.get();
+        }
+        finally {
+            timer("epoxy.response.assemble", "Assembly of the combined/appended response",
+                    "mode", mode).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordRequest(String host, MediaType contentType, String outcome, long nanos) {
+        timer("epoxy.upstream.request", "Upstream round-trip including the body parse",
+                "host", hostTags.tag(host), "content_type", contentType(contentType), "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordParse(String host, MediaType contentType, String outcome, long nanos) {
+        timer("epoxy.upstream.parse", "Parse of the upstream body",
+                "host", hostTags.tag(host), "content_type", contentType(contentType), "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSerialize(String format, String outcome, long nanos, long bytes) {
+        timer("epoxy.response.serialize", "Serialization of the response",
+                "format", format, "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+        recordBytesOut(bytes);
+    }
+
+    public void recordBytesIn(String host, long bytes) {
+        Counter.builder("epoxy.upstream.bytes.in")
+                .description("Upstream response body bytes read")
+                .baseUnit("bytes")
+                .tag("host", hostTags.tag(host))
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    public void recordBytesOut(long bytes) {
+        bytesOut.increment(bytes);
+    }
+
+    public void apiFailed(String host) {
+        Counter.builder("epoxy.api.failed")
+                .description("Upstream results replaced by API_FAILED")
+                .tag("host", hostTags.tag(host))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void apiPending(String host) {
+        Counter.builder("epoxy.api.pending")
+                .description("Upstream results still pending at the deadline of an errors=partial request")
+                .tag("host", hostTags.tag(host))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String contentType(MediaType contentType) {
+        if (contentType == null) {
+            return NONE;
+        }
+        String subtype = contentType.getSubtype();
+        if (subtype.endsWith("json")) {
+            return "json";
+        }
+        if (subtype.endsWith("xml")) {
+            return "xml";
+        }
+        return HostTags.OTHER;
+    }
+}
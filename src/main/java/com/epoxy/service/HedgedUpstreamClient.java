@@ -0,0 +1,174 @@
+package com.epoxy.service;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.HedgeBudget;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Records the latency of every upstream call per host, timeouts included, and when hedging
+ * is enabled sends a second identical GET once the first has been outstanding for the host's
+ * hedge delay. The first response wins and the other call is cancelled; a failed call only fails the fetch
+ * once no other call is left. Hedges are drawn from a budget so they add a bounded share
+ * of extra upstream load.
+ * */
+public class HedgedUpstreamClient implements UpstreamClient {
+
+    private final UpstreamClient delegate;
+    private final UpstreamLatencies upstreamLatencies;
+    private final HedgeBudget hedgeBudget;
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong hedgesThrottled = new AtomicLong();
+
+    public HedgedUpstreamClient(UpstreamClient delegate, UpstreamLatencies upstreamLatencies, HedgeBudget hedgeBudget) {
+        this.delegate = delegate;
+        this.upstreamLatencies = upstreamLatencies;
+        this.hedgeBudget = hedgeBudget;
+    }
+
+    @Override
+    public CompletableFuture<UpstreamResponse> get(String url, Deadline deadline, UpstreamBodyReader bodyReader) {
+        String host = UpstreamLatencies.host(url);
+        long hedgeDelay = upstreamLatencies.hedgeDelay(host);
+        if (hedgeDelay < 0) {
+            return call(host, url, deadline, bodyReader);
+        }
+
+        hedgeBudget.onRequest();
+        Race race = new Race();
+        race.start(host, url, deadline, bodyReader, false);
+        if (deadline.remainingMillis() > hedgeDelay) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (race.result.isDone()) {
+                    return;
+                }
+                if (!hedgeBudget.tryAcquire()) {
+                    hedgesThrottled.incrementAndGet();
+                    return;
+                }
+                race.start(host, url, deadline, bodyReader, true);
+            });
+        }
+        return race.result;
+    }
+
+    private CompletableFuture<UpstreamResponse> call(String host, String url, Deadline deadline, UpstreamBodyReader bodyReader) {
+        long start = System.nanoTime();
+        CompletableFuture<UpstreamResponse> call = delegate.get(url, deadline, bodyReader);
+        call.whenComplete((response, ex) -> {
+            if (ex == null || timedOut(call, ex)) {
+                upstreamLatencies.record(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+        return call;
+    }
+
+    /*
+     * A call that timed out or was cut off at the deadline took at least as long as it ran, so
+     * it is recorded at that (censored) latency; leaving it out would keep the timeout of a host
+     * that got slower at the old, too short value.
+     * */
+    private static boolean timedOut(CompletableFuture<UpstreamResponse> call, Throwable ex) {
+        if (call.isCancelled()) {
+            return Cancellation.atDeadline();
+        }
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    public long getHedgesThrottled() {
+        return hedgesThrottled.get();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("epoxy.upstream.hedges", this, HedgedUpstreamClient::getHedges)
+                .description("Hedged upstream calls sent")
+                .register(registry);
+        FunctionCounter.builder("epoxy.upstream.hedges.won", this, HedgedUpstreamClient::getHedgesWon)
+                .description("Hedged upstream calls that answered first")
+                .register(registry);
+        FunctionCounter.builder("epoxy.upstream.hedges.throttled", this, HedgedUpstreamClient::getHedgesThrottled)
+                .description("Hedges skipped because the hedge budget was spent")
+                .register(registry);
+    }
+
+    /*
+     * The calls of one fetch racing for its result.
+     * */
+    private final class Race {
+        private final CompletableFuture<UpstreamResponse> result = new CompletableFuture<>();
+        private final List<CompletableFuture<UpstreamResponse>> calls = new ArrayList<>();
+        private int pending;
+
+        private Race() {
+            /* the winner is already done, so this only cancels the loser, or everything when the fetch was cancelled */
+            result.whenComplete((response, ex) -> cancelCalls());
+        }
+
+        private void start(String host, String url, Deadline deadline, UpstreamBodyReader bodyReader, boolean hedge) {
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                pending++;
+            }
+            if (hedge) {
+                hedges.incrementAndGet();
+            }
+
+            CompletableFuture<UpstreamResponse> call = call(host, url, deadline, bodyReader);
+            synchronized (this) {
+                calls.add(call);
+            }
+            call.whenComplete((response, ex) -> {
+                if (ex == null) {
+                    if (result.complete(response) && hedge) {
+                        hedgesWon.incrementAndGet();
+                    }
+                    return;
+                }
+                boolean last;
+                synchronized (this) {
+                    last = --pending == 0;
+                }
+                if (last) {
+                    result.completeExceptionally(ex);
+                }
+            });
+            if (result.isDone()) {
+                call.cancel(true);
+            }
+        }
+
+        private void cancelCalls() {
+            List<CompletableFuture<UpstreamResponse>> started;
+            synchronized (this) {
+                started = new ArrayList<>(calls);
+            }
+            started.forEach(call -> call.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.epoxy.service;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.Deadline;
+import org.springframework.http.HttpHeaders;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * Non-blocking engine on the JDK HttpClient: no thread is held while waiting for the upstream.
+ * Once the headers are in, the body is parsed straight from the client's input stream, never
+ * collected into a byte array or decoded into a String. Cancelling the returned future cancels
+ * the exchange (the JDK client aborts it on cancel), or closes the body stream once it is being read.
+ * Compression is asked for with Accept-Encoding (the JDK client does not do it on its own) and the
+ * compressed bytes are inflated as they are parsed.
+ * */
+public class HttpClientUpstreamClient implements UpstreamClient {
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int INFLATE_BUFFER_SIZE = 8192;
+
+    private final HttpClient httpClient;
+
+    public HttpClientUpstreamClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public CompletableFuture<UpstreamResponse> get(String url, Deadline deadline, UpstreamBodyReader bodyReader) {
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new HttpTimeoutException("Deadline exceeded before requesting " + url));
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(Math.max(1, deadline.remainingMillis())))
+                    .header(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING)
+                    .GET()
+                    .build();
+        }
+        catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<HttpResponse<InputStream>> exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        Cancellation cancellation = new Cancellation();
+        CompletableFuture<UpstreamResponse> call = exchange.thenApply(response -> {
+            HttpHeaders headers = new HttpHeaders();
+            response.headers().map().forEach(headers::addAll);
+            try (InputStream body = response.body()) {
+                cancellation.onCancel(() -> closeQuietly(body));
+                return UpstreamBodyReader.readResponse(response.statusCode(), headers, decode(headers, body), bodyReader);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        cancellation.cancelWith(call);
+        return Cancellation.propagate(call, exchange);
+    }
+
+    /*
+     * Wraps the body in the decoder of its Content-Encoding and drops the header, as it no longer applies.
+     * */
+    private static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        String contentEncoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding == null) {
+            return body;
+        }
+        PushbackInputStream stream = new PushbackInputStream(body, 1);
+        int first = stream.read();
+        if (first == -1) {
+            return stream;
+        }
+        stream.unread(first);
+        InputStream decoded;
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+            case "x-gzip":
+                decoded = new GZIPInputStream(stream, INFLATE_BUFFER_SIZE);
+                break;
+            case "deflate":
+                decoded = new InflaterInputStream(stream, new Inflater(), INFLATE_BUFFER_SIZE);
+                break;
+            default:
+                return stream;
+        }
+        headers.remove(HttpHeaders.CONTENT_ENCODING);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        return decoded;
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        }
+        catch (IOException e) {
+            /* the exchange is being torn down anyway */
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.epoxy.service;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Deadline;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Times every upstream call and the parse of its body, and counts the body bytes read.
+ * The outcome of the call is its status class (2xx, 4xx, ...), error or cancelled.
+ * */
+public class MeteredUpstreamClient implements UpstreamClient {
+
+    private final UpstreamClient delegate;
+    private final FetchMetrics fetchMetrics;
+
+    public MeteredUpstreamClient(UpstreamClient delegate, FetchMetrics fetchMetrics) {
+        this.delegate = delegate;
+        this.fetchMetrics = fetchMetrics;
+    }
+
+    @Override
+    public CompletableFuture<UpstreamResponse> get(String url, Deadline deadline, UpstreamBodyReader bodyReader) {
+        String host = UpstreamLatencies.host(url);
+        UpstreamBodyReader timedReader = (body, contentType) -> {
+            long start = System.nanoTime();
+            String outcome = FetchMetrics.OUTCOME_ERROR;
+            try {
+                JsonNode jsonNode = bodyReader.read(body, contentType);
+                outcome = jsonNode == null ? FetchMetrics.OUTCOME_ERROR : FetchMetrics.OUTCOME_SUCCESS;
+                return jsonNode;
+            }
+            finally {
+                fetchMetrics.recordParse(host, contentType, outcome, System.nanoTime() - start);
+            }
+        };
+
+        long start = System.nanoTime();
+        CompletableFuture<UpstreamResponse> call = delegate.get(url, deadline, timedReader);
+        call.whenComplete((response, ex) -> {
+            long nanos = System.nanoTime() - start;
+            if (ex != null) {
+                fetchMetrics.recordRequest(host, null, call.isCancelled() ? FetchMetrics.OUTCOME_CANCELLED : FetchMetrics.OUTCOME_ERROR, nanos);
+                return;
+            }
+            fetchMetrics.recordRequest(host, response.getContentType(), (response.getStatusCode() / 100) + "xx", nanos);
+            if (response.getBodyBytes() > 0) {
+                fetchMetrics.recordBytesIn(host, response.getBodyBytes());
+            }
+        });
+        return call;
+    }
+}
@@ -0,0 +1,156 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.Projection;
+import com.epoxy.util.RawJsonBytes;
+import com.epoxy.util.Util;
+import com.epoxy.util.XmlStreamConverter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Body reader of the passthrough mode: JSON bodies are kept as raw bytes and spliced
+ * into the output unchanged (transcoded to UTF-8 first when another charset is declared).
+ * XML bodies are streamed into JSON bytes when the streaming converter is enabled,
+ * and go through the regular XmlMapper parse otherwise. With a fields
+ * projection, the kept tokens are copied into new JSON bytes, still without building a tree.
+ * */
+@Component
+@Slf4j
+public class PassthroughBodyReader implements UpstreamBodyReader {
+
+    private static final byte[] EMPTY_OBJECT = {'{', '}'};
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Autowired
+    private Util util;
+
+    @Autowired
+    private EpoxyProperties epoxyProperties;
+
+    @Autowired(required = false)
+    private XmlStreamConverter xmlStreamConverter;
+
+    @Override
+    public JsonNode read(InputStream body, MediaType contentType) throws IOException {
+        if (MediaType.APPLICATION_XML.isCompatibleWith(contentType)) {
+            return xmlStreamConverter != null ? fromXml(body, null) : util.parseApiResponse(body, contentType);
+        }
+
+        boolean scan = epoxyProperties.getPassthrough().isValidate();
+        if (!scan && !isJson(contentType)) {
+            return util.parseApiResponse(body, contentType);
+        }
+
+        byte[] json = utf8(body, contentType);
+        if (json == null) {
+            return null;
+        }
+        if (scan && !isSingleJsonValue(json)) {
+            return null;
+        }
+        return RawJsonBytes.node(json);
+    }
+
+    public JsonNode read(InputStream body, MediaType contentType, Projection projection) throws IOException {
+        if (projection == null) {
+            return read(body, contentType);
+        }
+        if (MediaType.APPLICATION_XML.isCompatibleWith(contentType)) {
+            return xmlStreamConverter != null ? fromXml(body, projection) : util.parseApiResponse(body, contentType, projection);
+        }
+        if (!epoxyProperties.getPassthrough().isValidate() && !isJson(contentType)) {
+            return util.parseApiResponse(body, contentType, projection);
+        }
+
+        byte[] utf8 = utf8(body, contentType);
+        if (utf8 == null) {
+            return null;
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonParser parser = projection.filter(jsonFactory.createParser(utf8));
+             JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+            }
+        }
+        catch (IOException e) {
+            log.error("Exception in PassthroughBodyReader::read() : {}", e.getMessage());
+            return null;
+        }
+        return projected(json);
+    }
+
+    private JsonNode fromXml(InputStream body, Projection projection) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            xmlStreamConverter.write(body, projection == null ? generator : projection.filter(generator));
+        }
+        catch (IOException e) {
+            log.error("Exception in PassthroughBodyReader::fromXml() : {}", e.getMessage());
+            return null;
+        }
+        return projection == null ? RawJsonBytes.node(json.toByteArray()) : projected(json);
+    }
+
+    /*
+     * Nothing kept is an empty object, as in the parsed mode.
+     * */
+    private JsonNode projected(ByteArrayOutputStream json) {
+        return RawJsonBytes.node(json.size() == 0 ? EMPTY_OBJECT : json.toByteArray());
+    }
+
+    /*
+     * The body as UTF-8, the encoding of the output it is spliced into. Null when the declared
+     * charset is not supported.
+     * */
+    private byte[] utf8(InputStream body, MediaType contentType) throws IOException {
+        Charset charset;
+        try {
+            charset = contentType != null ? contentType.getCharset() : null;
+        }
+        catch (IllegalArgumentException e) {
+            log.error("Exception in PassthroughBodyReader::utf8() : {}", e.getMessage());
+            return null;
+        }
+        byte[] bytes = body.readAllBytes();
+        if (charset == null || StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)) {
+            return bytes;
+        }
+        return new String(bytes, charset).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean isJson(MediaType contentType) {
+        return contentType != null && (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+                || "json".equals(contentType.getSubtypeSuffix()));
+    }
+
+    /*
+     * Token scan without building a tree: the body has to be exactly one JSON value.
+     * */
+    private boolean isSingleJsonValue(byte[] json) {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        }
+        catch (IOException e) {
+            log.error("Exception in PassthroughBodyReader::isSingleJsonValue() : {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.CircuitBreaker;
+import com.epoxy.util.ConsistentHashRing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * SharedCacheBackend over Redis-compatible nodes (GET, SET PX), each key on one node picked by
+ * consistent hashing, so nodes can be added with only a share of the keys moving. Every node has
+ * a small connection pool and a circuit breaker: a node timing out or refusing connections is
+ * skipped (calls fail right away) until circuit-open-ms has passed, instead of adding timeout-ms
+ * to every fetch.
+ * */
+public class RedisSharedCacheBackend implements SharedCacheBackend {
+
+    /* a node opens once half of its last 20 calls (at least 5) failed; slowness alone never opens it,
+       timeout-ms already turns a slow call into a failure; one trial call when circuit-open-ms is over */
+    private static final int BREAKER_WINDOW_SIZE = 20;
+    private static final int BREAKER_MINIMUM_CALLS = 5;
+    private static final int BREAKER_FAILURE_RATE_THRESHOLD = 50;
+    private static final int BREAKER_SLOW_CALL_RATE_THRESHOLD = 100;
+    private static final long BREAKER_SLOW_CALL_DURATION_MS = Long.MAX_VALUE;
+    private static final int BREAKER_PERMITTED_CALLS_IN_HALF_OPEN = 1;
+
+    private final ConsistentHashRing<Node> ring;
+    private final List<Node> nodes = new ArrayList<>();
+    private final String keyPrefix;
+
+    public RedisSharedCacheBackend(EpoxyProperties.Shared properties) {
+        this.keyPrefix = properties.getKeyPrefix();
+        for (String address : properties.getNodes()) {
+            nodes.add(new Node(address.trim(), properties));
+        }
+        this.ring = new ConsistentHashRing<>(nodes, properties.getVirtualNodes(), node -> node.address);
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        Node node = nodeFor(key);
+        return node.call(jedis -> jedis.get(redisKey(key)));
+    }
+
+    @Override
+    public void set(String key, byte[] value, long ttlMs) throws IOException {
+        Node node = nodeFor(key);
+        node.call(jedis -> jedis.set(redisKey(key), value, SetParams.setParams().px(ttlMs)));
+    }
+
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (Node node : nodes) {
+            Gauge.builder("epoxy.cache.shared.circuit.state", node.breaker, breaker -> breaker.getState().ordinal())
+                    .description("Shared cache node circuit state: 0 closed, 1 open, 2 half-open")
+                    .tag("node", node.address)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void close() {
+        nodes.forEach(node -> node.pool.close());
+    }
+
+    private Node nodeFor(String key) throws IOException {
+        Node node = ring.nodeFor(key);
+        if (node == null) {
+            throw new IOException("No shared cache nodes configured");
+        }
+        return node;
+    }
+
+    private byte[] redisKey(String key) {
+        return (keyPrefix + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface Command<T> {
+        T apply(Jedis jedis);
+    }
+
+    private static final class Node {
+        private final String address;
+        private final JedisPool pool;
+        private final CircuitBreaker breaker;
+
+        private Node(String address, EpoxyProperties.Shared properties) {
+            this.address = address;
+            int separator = address.lastIndexOf(':');
+            String host = separator > 0 ? address.substring(0, separator) : address;
+            int port = separator > 0 ? Integer.parseInt(address.substring(separator + 1)) : 6379;
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(properties.getMaxConnections());
+            poolConfig.setMaxIdle(properties.getMaxConnections());
+            poolConfig.setMaxWait(Duration.ofMillis(properties.getTimeoutMs()));
+            poolConfig.setJmxEnabled(false);
+            this.pool = new JedisPool(poolConfig, host, port, properties.getTimeoutMs(), properties.getPassword());
+            this.breaker = new CircuitBreaker(BREAKER_WINDOW_SIZE, BREAKER_MINIMUM_CALLS, BREAKER_FAILURE_RATE_THRESHOLD,
+                    BREAKER_SLOW_CALL_RATE_THRESHOLD, BREAKER_SLOW_CALL_DURATION_MS, properties.getCircuitOpenMs(),
+                    BREAKER_PERMITTED_CALLS_IN_HALF_OPEN);
+        }
+
+        private <T> T call(Command<T> command) throws IOException {
+            if (!breaker.tryAcquire()) {
+                throw new IOException("Shared cache node " + address + " is unavailable");
+            }
+            long start = System.nanoTime();
+            try (Jedis jedis = pool.getResource()) {
+                T result = command.apply(jedis);
+                breaker.onSuccess(elapsedMs(start));
+                return result;
+            }
+            catch (JedisException e) {
+                breaker.onFailure(elapsedMs(start));
+                throw new IOException("Shared cache node " + address + " failed: " + e.getMessage(), e);
+            }
+        }
+
+        private static long elapsedMs(long start) {
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.epoxy.service;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.UpstreamExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Blocking engine: every fetch holds an upstream executor thread for the full round-trip.
+ * Cancelling the returned future aborts the HTTP exchange, or skips it when still queued.
+ * */
+@Slf4j
+public class RestTemplateUpstreamClient implements UpstreamClient {
+
+    private final RestTemplate restTemplate;
+    private final UpstreamExecutor upstreamExecutor;
+
+    public RestTemplateUpstreamClient(RestTemplate restTemplate, UpstreamExecutor upstreamExecutor) {
+        this.restTemplate = restTemplate;
+        this.upstreamExecutor = upstreamExecutor;
+    }
+
+    @Override
+    public CompletableFuture<UpstreamResponse> get(String url, Deadline deadline, UpstreamBodyReader bodyReader) {
+        Cancellation cancellation = new Cancellation();
+        try {
+            CompletableFuture<UpstreamResponse> future = CompletableFuture.supplyAsync(() -> {
+                if (cancellation.isCancelled()) {
+                    throw new CancellationException("Fetch of " + url + " cancelled before it started");
+                }
+                return cancellation.run(() -> deadline.run(() -> restTemplate.execute(url, HttpMethod.GET, null,
+                        response -> UpstreamBodyReader.readResponse(
+                                response.getStatusCode().value(), response.getHeaders(), response.getBody(), bodyReader))
+                ));
+            }, upstreamExecutor);
+            cancellation.cancelWith(future);
+            return future;
+        }
+        catch (RejectedExecutionException e) {
+            log.warn("Upstream executor saturated, rejecting fetch of {}", url);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
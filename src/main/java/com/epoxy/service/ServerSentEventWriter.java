@@ -0,0 +1,159 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.model.EpoxyRequest;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.RawJsonBytes;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import static com.epoxy.model.constants.AppConstants.STATUS_CANCELLED;
+import static com.epoxy.model.constants.AppConstants.STATUS_FAILED;
+import static com.epoxy.model.constants.AppConstants.STATUS_OK;
+import static com.epoxy.model.constants.AppConstants.STATUS_PENDING;
+
+/*
+ * Writes a text/event-stream: one "result" event per upstream fetch as soon as it completes
+ * (id is the index of the endpoint), then one "summary" event with the status and latency of
+ * every endpoint in input order. Writes block while the client is not reading, which holds the
+ * remaining results back; a failed write (client gone, or too slow for the async timeout) cancels
+ * every fetch still in flight. While nothing completes, a comment is sent every heartbeat so a
+ * disconnect is noticed before the next result. Fetches left when the deadline (errors=partial)
+ * passes are reported pending in the summary and keep running to fill the cache.
+ * */
+@Component
+public class ServerSentEventWriter {
+
+    private static final String EVENT_RESULT = "result";
+    private static final String EVENT_SUMMARY = "summary";
+    private static final String HEARTBEAT = ": heartbeat\n\n";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EpoxyProperties epoxyProperties;
+
+    public void write(OutputStream outputStream, EpoxyRequest request, List<CompletableFuture<JsonNode>> futures,
+                      long startNanos, Deadline deadline) throws IOException {
+        BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        AtomicLongArray latencies = new AtomicLongArray(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            futures.get(i).whenComplete((jsonNode, ex) -> {
+                latencies.set(index, System.nanoTime() - startNanos);
+                completed.add(index);
+            });
+        }
+
+        String[] statuses = new String[futures.size()];
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            long heartbeatMs = epoxyProperties.getSse().getHeartbeatMs();
+            int remaining = futures.size();
+            while (remaining > 0 && (deadline == null || !deadline.isExpired())) {
+                long waitMs = deadline == null ? heartbeatMs : Math.min(heartbeatMs, deadline.remainingMillis());
+                Integer index = nextCompleted(completed, waitMs);
+                if (index == null) {
+                    if (waitMs == heartbeatMs) {
+                        generator.writeRaw(HEARTBEAT);
+                        generator.flush();
+                    }
+                    continue;
+                }
+                remaining--;
+                CompletableFuture<JsonNode> future = futures.get(index);
+                JsonNode jsonNode = future.isCompletedExceptionally() ? null : future.join();
+                statuses[index] = future.isCancelled() ? STATUS_CANCELLED : jsonNode == null ? STATUS_FAILED : STATUS_OK;
+
+                writeEvent(generator, EVENT_RESULT, String.valueOf(index));
+                writeEntry(generator, request.getEndpoints().get(index), statuses[index], latencies.get(index), jsonNode);
+                endEvent(generator);
+            }
+
+            writeEvent(generator, EVENT_SUMMARY, null);
+            generator.writeStartObject();
+            generator.writeNumberField("latencyMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            generator.writeArrayFieldStart("entries");
+            for (int i = 0; i < futures.size(); i++) {
+                String status = statuses[i] != null ? statuses[i] : STATUS_PENDING;
+                writeEntry(generator, request.getEndpoints().get(i), status, latencies.get(i), null);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            endEvent(generator);
+        }
+        catch (IOException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    private void writeEvent(JsonGenerator generator, String event, String id) throws IOException {
+        generator.writeRaw("event: ");
+        generator.writeRaw(event);
+        if (id != null) {
+            generator.writeRaw("\nid: ");
+            generator.writeRaw(id);
+        }
+        generator.writeRaw("\ndata: ");
+    }
+
+    private void endEvent(JsonGenerator generator) throws IOException {
+        generator.writeRaw("\n\n");
+        generator.flush();
+    }
+
+    private void writeEntry(JsonGenerator generator, String url, String status, long latencyNanos, JsonNode jsonNode) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("url", url);
+        generator.writeStringField("status", status);
+        if (!STATUS_PENDING.equals(status)) {
+            generator.writeNumberField("latencyMs", TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+        if (jsonNode != null) {
+            generator.writeFieldName("data");
+            writeData(generator, jsonNode);
+        }
+        generator.writeEndObject();
+    }
+
+    /*
+     * A data line ends at the first line break, so a passthrough body laid out over several lines
+     * is re-serialized compactly instead of copied as is.
+     * */
+    private void writeData(JsonGenerator generator, JsonNode jsonNode) throws IOException {
+        RawJsonBytes rawJson = UpstreamResponseCache.rawJson(jsonNode);
+        if (rawJson != null && !rawJson.isSingleLine()) {
+            rawJson.copyTo(generator);
+        }
+        else {
+            generator.writeTree(jsonNode);
+        }
+    }
+
+    /*
+     * Null when nothing completes within waitMs.
+     * */
+    private Integer nextCompleted(BlockingQueue<Integer> completed, long waitMs) {
+        try {
+            return completed.poll(waitMs, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.epoxy.service;
+
+import java.io.IOException;
+
+/*
+ * Byte store behind SharedResponseCache, shared by every instance. Implementations bound each
+ * call by their own timeout and throw IOException when the store can not be reached, which
+ * the cache treats as a miss.
+ * */
+public interface SharedCacheBackend extends AutoCloseable {
+
+    /*
+     * Null when the key is absent or expired.
+     * */
+    byte[] get(String key) throws IOException;
+
+    void set(String key, byte[] value, long ttlMs) throws IOException;
+
+    @Override
+    void close();
+}
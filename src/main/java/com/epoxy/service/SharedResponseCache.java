@@ -0,0 +1,218 @@
+package com.epoxy.service;
+
+import com.epoxy.util.RawJsonBytes;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/*
+ * Second-level cache of upstream payloads shared by every instance, under the in-process
+ * UpstreamResponseCache (which is its near cache). Payloads are stored as Smile bytes (raw JSON
+ * for passthrough) behind a 25 byte header: the format, the wall-clock expiry and the
+ * stale-while-revalidate / stale-if-error windows of the response (-1 when it gave none, for the
+ * reading instance's defaults), with the Cache-Control / Expires lifetime as the backend TTL.
+ * Reads and writes run on a small pool of their own so a slow backend never holds a request or
+ * fetch thread; a backend error or a full queue counts as a miss, and a write that can not be
+ * queued is dropped.
+ * */
+@Slf4j
+public class SharedResponseCache implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 25;
+    /* 0 and 1 were the formats of the 9 byte header without the stale windows, now read as misses */
+    private static final byte FORMAT_SMILE = 2;
+    private static final byte FORMAT_RAW_JSON = 3;
+    private static final long NO_WINDOW = -1;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final SharedCacheBackend backend;
+    private final Duration defaultTtl;
+    private final LongSupplier clock;
+    private final ThreadPoolExecutor executor;
+    private final SmileMapper smileMapper = new SmileMapper();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter errors;
+    private final Counter writesDropped;
+
+    public SharedResponseCache(SharedCacheBackend backend, Duration defaultTtl, int threads, MeterRegistry meterRegistry) {
+        this(backend, defaultTtl, threads, meterRegistry, System::currentTimeMillis);
+    }
+
+    SharedResponseCache(SharedCacheBackend backend, Duration defaultTtl, int threads, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.backend = backend;
+        this.defaultTtl = defaultTtl;
+        this.clock = clock;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+                task -> {
+                    Thread thread = new Thread(task, "epoxy-shared-cache-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.errors = lookups(meterRegistry, "error");
+        this.writesDropped = Counter.builder("epoxy.cache.shared.writes.dropped")
+                .description("Shared cache writes dropped because the backend failed or the queue was full")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("epoxy.cache.shared.lookups")
+                .description("Shared cache lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /*
+     * Completes with the payload, its remaining lifetime and stale windows, or null on a miss or backend error.
+     * */
+    public CompletableFuture<Hit> get(String key) {
+        try {
+            return CompletableFuture.supplyAsync(() -> read(key), executor);
+        }
+        catch (RejectedExecutionException e) {
+            errors.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private Hit read(String key) {
+        byte[] value;
+        try {
+            value = backend.get(key);
+        }
+        catch (IOException e) {
+            log.debug("Exception in SharedResponseCache::read() : {}", e.getMessage());
+            errors.increment();
+            return null;
+        }
+        boolean known = value != null && value.length >= HEADER_BYTES && (value[0] == FORMAT_SMILE || value[0] == FORMAT_RAW_JSON);
+        ByteBuffer header = known ? ByteBuffer.wrap(value, 1, HEADER_BYTES - 1) : null;
+        long ttlMs = known ? header.getLong() - clock.getAsLong() : 0;
+        if (ttlMs <= 0) {
+            misses.increment();
+            return null;
+        }
+        try {
+            byte[] payload = Arrays.copyOfRange(value, HEADER_BYTES, value.length);
+            JsonNode jsonNode = value[0] == FORMAT_RAW_JSON ? RawJsonBytes.node(payload) : smileMapper.readTree(payload);
+            hits.increment();
+            return new Hit(jsonNode, Duration.ofMillis(ttlMs), window(header.getLong()), window(header.getLong()), payload.length);
+        }
+        catch (IOException e) {
+            log.error("Exception in SharedResponseCache::read() : {}", e.getMessage());
+            errors.increment();
+            return null;
+        }
+    }
+
+    private static Duration window(long windowMs) {
+        return windowMs == NO_WINDOW ? null : Duration.ofMillis(windowMs);
+    }
+
+    /*
+     * Stores the payload for the lifetime the headers give it, not at all when they forbid caching.
+     * */
+    public void put(String key, JsonNode jsonNode, HttpHeaders headers) {
+        Duration ttl = UpstreamResponseCache.timeToLive(headers, defaultTtl);
+        if (jsonNode == null || ttl == null) {
+            return;
+        }
+        long expiresAt = clock.getAsLong() + ttl.toMillis();
+        long staleWhileRevalidateMs = windowMs(UpstreamResponseCache.staleWindow(headers, "stale-while-revalidate=", null));
+        long staleIfErrorMs = windowMs(UpstreamResponseCache.staleWindow(headers, "stale-if-error=", null));
+        try {
+            executor.execute(() -> write(key, jsonNode, expiresAt, staleWhileRevalidateMs, staleIfErrorMs, ttl.toMillis()));
+        }
+        catch (RejectedExecutionException e) {
+            writesDropped.increment();
+        }
+    }
+
+    private static long windowMs(Duration window) {
+        return window == null ? NO_WINDOW : window.toMillis();
+    }
+
+    private void write(String key, JsonNode jsonNode, long expiresAt, long staleWhileRevalidateMs, long staleIfErrorMs, long ttlMs) {
+        try {
+            RawJsonBytes rawJson = UpstreamResponseCache.rawJson(jsonNode);
+            byte[] payload = rawJson != null ? rawJson.asUnquotedUTF8() : smileMapper.writeValueAsBytes(jsonNode);
+            ByteBuffer value = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+            value.put(rawJson != null ? FORMAT_RAW_JSON : FORMAT_SMILE)
+                    .putLong(expiresAt)
+                    .putLong(staleWhileRevalidateMs)
+                    .putLong(staleIfErrorMs)
+                    .put(payload);
+            backend.set(key, value.array(), ttlMs);
+        }
+        catch (IOException e) {
+            log.debug("Exception in SharedResponseCache::write() : {}", e.getMessage());
+            writesDropped.increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        backend.close();
+    }
+
+    /*
+     * A payload found in the shared cache, with what is left of its lifetime and the stale
+     * windows of the response (null when it gave none).
+     * */
+    public static final class Hit {
+        private final JsonNode jsonNode;
+        private final Duration ttl;
+        private final Duration staleWhileRevalidate;
+        private final Duration staleIfError;
+        private final long bytes;
+
+        Hit(JsonNode jsonNode, Duration ttl, Duration staleWhileRevalidate, Duration staleIfError, long bytes) {
+            this.jsonNode = jsonNode;
+            this.ttl = ttl;
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            this.staleIfError = staleIfError;
+            this.bytes = bytes;
+        }
+
+        public JsonNode getJsonNode() {
+            return jsonNode;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public Duration getStaleWhileRevalidate() {
+            return staleWhileRevalidate;
+        }
+
+        public Duration getStaleIfError() {
+            return staleIfError;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.epoxy.service;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.CountingInputStream;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+/*
+ * Turns an upstream body into a JsonNode straight from the response bytes, with the
+ * parser chosen from the Content-Type before anything is read.
+ * */
+@FunctionalInterface
+public interface UpstreamBodyReader {
+
+    JsonNode read(InputStream body, MediaType contentType) throws IOException;
+
+    static UpstreamResponse readResponse(int statusCode, HttpHeaders headers, InputStream body, UpstreamBodyReader reader) throws IOException {
+        UpstreamResponse.UpstreamResponseBuilder response = UpstreamResponse.builder()
+                .statusCode(statusCode)
+                .headers(headers);
+        if (body == null) {
+            return response.build();
+        }
+
+        CountingInputStream countingBody = new CountingInputStream(body);
+        PushbackInputStream peekableBody = new PushbackInputStream(countingBody, 1);
+        int first = peekableBody.read();
+        if (first == -1) {
+            return response.build();
+        }
+        peekableBody.unread(first);
+
+        JsonNode jsonNode = reader.read(peekableBody, headers.getContentType());
+        return response
+                .jsonNode(jsonNode)
+                .bodyBytes(countingBody.getCount())
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.CircuitBreaker;
+import com.epoxy.util.HostTags;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * One circuit breaker per upstream host (host:port), created on first use. The state of
+ * every breaker is published as epoxy.upstream.circuit.state{host} (0 closed, 1 open,
+ * 2 half-open) along with the calls it rejected. Hosts come from client-supplied URLs: at
+ * most max-hosts breakers are kept (Caffeine evicts the rarely used ones), and only the
+ * hosts that got a tag of their own from epoxy.metrics.max-host-tags are published.
+ * */
+@Component
+public class UpstreamCircuitBreakers {
+
+    private static final String STATE = "epoxy.upstream.circuit.state";
+    private static final String NOT_PERMITTED = "epoxy.upstream.circuit.not.permitted";
+
+    private final EpoxyProperties epoxyProperties;
+    private final MeterRegistry meterRegistry;
+    private final HostTags hostTags;
+    private final Cache<String, CircuitBreaker> breakers;
+
+    public UpstreamCircuitBreakers(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        this.epoxyProperties = epoxyProperties;
+        this.meterRegistry = meterRegistry;
+        this.hostTags = new HostTags(epoxyProperties.getMetrics().getMaxHostTags());
+        this.breakers = Caffeine.newBuilder()
+                .maximumSize(epoxyProperties.getCircuitBreaker().getMaxHosts())
+                .evictionListener((String host, CircuitBreaker breaker, RemovalCause cause) -> unregister(host))
+                .build();
+    }
+
+    public CircuitBreaker forHost(String host) {
+        return breakers.get(host, key -> register(key, create()));
+    }
+
+    private CircuitBreaker create() {
+        EpoxyProperties.CircuitBreaker properties = epoxyProperties.getCircuitBreaker();
+        return new CircuitBreaker(
+                properties.getWindowSize(),
+                properties.getMinimumCalls(),
+                properties.getFailureRateThreshold(),
+                properties.getSlowCallRateThreshold(),
+                properties.getSlowCallDurationMs(),
+                properties.getWaitInOpenMs(),
+                properties.getPermittedCallsInHalfOpen());
+    }
+
+    private CircuitBreaker register(String host, CircuitBreaker breaker) {
+        if (HostTags.OTHER.equals(hostTags.tag(host))) {
+            return breaker;
+        }
+        Gauge.builder(STATE, breaker, circuitBreaker -> circuitBreaker.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("host", host)
+                .register(meterRegistry);
+        FunctionCounter.builder(NOT_PERMITTED, breaker, CircuitBreaker::getNotPermitted)
+                .description("Upstream calls short-circuited by the breaker")
+                .tag("host", host)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    /*
+     * A breaker created again for an evicted host registers fresh meters bound to it.
+     * */
+    private void unregister(String host) {
+        meterRegistry.find(STATE).tag("host", host).meters().forEach(meterRegistry::remove);
+        meterRegistry.find(NOT_PERMITTED).tag("host", host).meters().forEach(meterRegistry::remove);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> hosts = new TreeMap<>();
+        breakers.asMap().forEach((host, breaker) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("state", breaker.getState());
+            stats.put("calls", breaker.getCalls());
+            stats.put("failureRate", breaker.getFailureRate());
+            stats.put("slowCallRate", breaker.getSlowCallRate());
+            stats.put("notPermitted", breaker.getNotPermitted());
+            hosts.put(host, stats);
+        });
+        return hosts;
+    }
+}
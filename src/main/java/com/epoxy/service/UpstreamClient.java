@@ -0,0 +1,14 @@
+package com.epoxy.service;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Deadline;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Engine performing the upstream GET of a fan-out. Implementations complete the
+ * future exceptionally when the call itself fails, status handling is left to the caller.
+ * */
+public interface UpstreamClient {
+
+    CompletableFuture<UpstreamResponse> get(String url, Deadline deadline, UpstreamBodyReader bodyReader);
+}
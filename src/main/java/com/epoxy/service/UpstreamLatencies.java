@@ -0,0 +1,103 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.LatencyHistogram;
+import com.epoxy.util.Util;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import static com.epoxy.model.constants.AppConstants.TIME_OUT;
+
+/*
+ * Observed upstream latency per host (host:port), used to pick the hedge delay and the
+ * timeout of fetches the caller gave no timeout for. Hosts with fewer than min-samples
+ * recent samples get no hedging and the default timeout. Hosts come from client-supplied
+ * URLs, so at most max-hosts are tracked; Caffeine evicts the rarely used ones beyond that.
+ * */
+@Component
+public class UpstreamLatencies {
+
+    private static final String UNKNOWN_HOST = "unknown";
+
+    private final EpoxyProperties epoxyProperties;
+
+    private final Cache<String, LatencyHistogram> histograms;
+
+    public UpstreamLatencies(EpoxyProperties epoxyProperties) {
+        this.epoxyProperties = epoxyProperties;
+        this.histograms = Caffeine.newBuilder()
+                .maximumSize(epoxyProperties.getLatency().getMaxHosts())
+                .build();
+    }
+
+    public static String host(String url) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getHost() == null ? UNKNOWN_HOST : Util.hostPort(uri);
+        }
+        catch (IllegalArgumentException e) {
+            return UNKNOWN_HOST;
+        }
+    }
+
+    public void record(String host, long millis) {
+        histograms.get(host, key -> new LatencyHistogram(epoxyProperties.getLatency().getWindowMs()))
+                .record(millis);
+    }
+
+    /*
+     * The host's latency at the given quantile, -1 while there are too few samples.
+     * */
+    public long percentile(String host, double quantile) {
+        LatencyHistogram histogram = histograms.getIfPresent(host);
+        if (histogram == null || histogram.count() < epoxyProperties.getLatency().getMinSamples()) {
+            return -1;
+        }
+        return histogram.percentile(quantile);
+    }
+
+    public long hedgeDelay(String host) {
+        EpoxyProperties.Hedge hedge = epoxyProperties.getHedge();
+        if (!hedge.isEnabled()) {
+            return -1;
+        }
+        long percentile = percentile(host, hedge.getPercentile());
+        return percentile < 0 ? -1 : Math.max(hedge.getMinDelayMs(), percentile);
+    }
+
+    public int adaptiveTimeout(String url) {
+        return hostTimeout(host(url));
+    }
+
+    private int hostTimeout(String host) {
+        EpoxyProperties.AdaptiveTimeout adaptiveTimeout = epoxyProperties.getAdaptiveTimeout();
+        if (!adaptiveTimeout.isEnabled()) {
+            return TIME_OUT;
+        }
+        long percentile = percentile(host, adaptiveTimeout.getPercentile());
+        if (percentile < 0) {
+            return TIME_OUT;
+        }
+        long timeout = Math.round(percentile * adaptiveTimeout.getMultiplier());
+        return (int) Math.min(adaptiveTimeout.getMaxMs(), Math.max(adaptiveTimeout.getMinMs(), timeout));
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> hosts = new TreeMap<>();
+        histograms.asMap().forEach((host, histogram) -> {
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("samples", histogram.count());
+            stats.put("p50", histogram.percentile(0.5));
+            stats.put("p95", histogram.percentile(0.95));
+            stats.put("p99", histogram.percentile(0.99));
+            stats.put("hedgeDelayMs", hedgeDelay(host));
+            stats.put("adaptiveTimeoutMs", (long) hostTimeout(host));
+            hosts.put(host, stats);
+        });
+        return hosts;
+    }
+}
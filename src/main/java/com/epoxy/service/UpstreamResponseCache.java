@@ -0,0 +1,365 @@
+package com.epoxy.service;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.OffHeapSegmentStore;
+import com.epoxy.util.RawJsonBytes;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+
+/*
+ * Parsed upstream responses keyed by URL. Entries are fresh for the Cache-Control / Expires
+ * lifetime of the response (or the configured default) and are evicted by approximate
+ * size once the weight limit is reached (Caffeine W-TinyLFU). Past that lifetime an entry
+ * is kept as the last good payload: within its stale-while-revalidate window it is still
+ * served while a refresh runs, within its stale-if-error window it stands in for a failed
+ * fetch. Both windows come from the Cache-Control directives of RFC 5861 or the defaults.
+ * With epoxy.cache.off-heap.enabled, payloads of at least min-bytes are kept as Smile bytes
+ * (raw JSON for passthrough) in an OffHeapSegmentStore and only turned back into a tree when
+ * a request looks them up; the heap then holds just the entry metadata.
+ * */
+@Component
+@Slf4j
+public class UpstreamResponseCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final Cache<String, Entry> cache;
+    private final OffHeapSegmentStore offHeapStore;
+    private final SmileMapper smileMapper = new SmileMapper();
+    private final long offHeapMinBytes;
+    private final Ticker ticker;
+    private final Duration defaultTtl;
+    private final Duration defaultStaleWhileRevalidate;
+    private final Duration defaultStaleIfError;
+    private final boolean enabled;
+    private final Counter staleServed;
+    private final Counter staleOnError;
+
+    @Autowired
+    public UpstreamResponseCache(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry) {
+        this(epoxyProperties, meterRegistry, Ticker.systemTicker());
+    }
+
+    UpstreamResponseCache(EpoxyProperties epoxyProperties, MeterRegistry meterRegistry, Ticker ticker) {
+        EpoxyProperties.Cache properties = epoxyProperties.getCache();
+        this.enabled = properties.isEnabled();
+        this.ticker = ticker;
+        this.defaultTtl = Duration.ofMillis(properties.getDefaultTtlMs());
+        this.defaultStaleWhileRevalidate = Duration.ofMillis(properties.getStaleWhileRevalidateMs());
+        this.defaultStaleIfError = Duration.ofMillis(properties.getStaleIfErrorMs());
+        EpoxyProperties.OffHeap offHeap = properties.getOffHeap();
+        this.offHeapMinBytes = offHeap.getMinBytes();
+        this.offHeapStore = offHeap.isEnabled()
+                ? new OffHeapSegmentStore(offHeap.getCapacityBytes(), offHeap.getSegmentBytes())
+                : null;
+        if (offHeapStore != null) {
+            offHeapStore.bindTo(meterRegistry, "epoxy.upstream.responses.offheap");
+        }
+        this.cache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .maximumWeight(properties.getMaxWeightBytes())
+                .weigher((String url, Entry entry) -> entry.weight)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String url, Entry entry, long currentTime) {
+                        return entry.retainNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String url, Entry entry, long currentTime, long currentDuration) {
+                        return entry.retainNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String url, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "epoxy.upstream.responses");
+        this.staleServed = Counter.builder("epoxy.upstream.responses.stale")
+                .description("Stale payloads served while a background refresh runs")
+                .tag("use", "revalidate")
+                .register(meterRegistry);
+        this.staleOnError = Counter.builder("epoxy.upstream.responses.stale")
+                .description("Stale payloads served in place of a failed fetch")
+                .tag("use", "error")
+                .register(meterRegistry);
+    }
+
+    /*
+     * The payload while it is fresh, null otherwise.
+     * */
+    public JsonNode get(String url) {
+        CachedResponse response = lookup(url);
+        return response != null && response.isFresh() ? response.jsonNode : null;
+    }
+
+    /*
+     * The entry in any state (fresh, revalidatable, usable on error), null when there is none.
+     * An off-heap payload is deserialized here, and an entry whose segment was recycled is dropped.
+     * */
+    public CachedResponse lookup(String url) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(url);
+        if (entry == null) {
+            return null;
+        }
+        JsonNode jsonNode = entry.onHeap != null ? entry.onHeap : readOffHeap(entry);
+        if (jsonNode == null) {
+            cache.asMap().remove(url, entry);
+            return null;
+        }
+        return new CachedResponse(jsonNode, ticker.read() - entry.storedAt, entry.ttlNanos,
+                entry.staleWhileRevalidateNanos, entry.staleIfErrorNanos);
+    }
+
+    /*
+     * The last good payload of a failed fetch when it is recent enough, null otherwise.
+     * */
+    public JsonNode staleIfError(String url) {
+        CachedResponse response = lookup(url);
+        if (response == null || !response.isUsableOnError()) {
+            return null;
+        }
+        staleOnError.increment();
+        return response.jsonNode;
+    }
+
+    public void staleServed() {
+        staleServed.increment();
+    }
+
+    public void put(String url, JsonNode jsonNode, HttpHeaders headers, long bodyBytes) {
+        if (!enabled || jsonNode == null) {
+            return;
+        }
+        Duration ttl = timeToLive(headers, defaultTtl);
+        if (ttl == null) {
+            return;
+        }
+        Duration staleWhileRevalidate = staleWindow(headers, "stale-while-revalidate=", defaultStaleWhileRevalidate);
+        Duration staleIfError = staleWindow(headers, "stale-if-error=", defaultStaleIfError);
+        store(url, jsonNode, new Entry(ticker.read(), ttl.toNanos(), staleWhileRevalidate.toNanos(), staleIfError.toNanos()), bodyBytes);
+    }
+
+    /*
+     * A payload taken from the shared cache, fresh for what is left of its lifetime there and stale
+     * within the windows its response gave (the defaults for a null one).
+     * */
+    public void put(String url, JsonNode jsonNode, Duration ttl, Duration staleWhileRevalidate, Duration staleIfError, long bodyBytes) {
+        if (!enabled || jsonNode == null) {
+            return;
+        }
+        Duration revalidateWindow = staleWhileRevalidate != null ? staleWhileRevalidate : defaultStaleWhileRevalidate;
+        Duration errorWindow = staleIfError != null ? staleIfError : defaultStaleIfError;
+        store(url, jsonNode, new Entry(ticker.read(), ttl.toNanos(), revalidateWindow.toNanos(), errorWindow.toNanos()), bodyBytes);
+    }
+
+    private void store(String url, JsonNode jsonNode, Entry entry, long bodyBytes) {
+        if (offHeapStore != null && bodyBytes >= offHeapMinBytes && writeOffHeap(entry, jsonNode)) {
+            entry.weight = url.length() + ENTRY_OVERHEAD_BYTES;
+        }
+        else {
+            entry.onHeap = jsonNode;
+            entry.weight = (int) Math.min(Integer.MAX_VALUE, bodyBytes + url.length() + ENTRY_OVERHEAD_BYTES);
+        }
+        cache.put(url, entry);
+    }
+
+    private boolean writeOffHeap(Entry entry, JsonNode jsonNode) {
+        RawJsonBytes rawJson = rawJson(jsonNode);
+        try {
+            byte[] payload = rawJson != null ? rawJson.asUnquotedUTF8() : smileMapper.writeValueAsBytes(jsonNode);
+            entry.offHeap = offHeapStore.put(payload);
+            entry.rawJson = rawJson != null;
+            return entry.offHeap != null;
+        }
+        catch (IOException e) {
+            log.error("Exception in UpstreamResponseCache::writeOffHeap() : {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private JsonNode readOffHeap(Entry entry) {
+        try {
+            return offHeapStore.read(entry.offHeap, payload -> entry.rawJson
+                    ? RawJsonBytes.node(payload.readAllBytes())
+                    : smileMapper.readTree(payload));
+        }
+        catch (IOException e) {
+            log.error("Exception in UpstreamResponseCache::readOffHeap() : {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * The raw JSON of a passthrough payload, null for a parsed tree.
+     * */
+    static RawJsonBytes rawJson(JsonNode jsonNode) {
+        if (jsonNode instanceof POJONode && ((POJONode) jsonNode).getPojo() instanceof RawValue) {
+            Object raw = ((RawValue) ((POJONode) jsonNode).getPojo()).rawValue();
+            return raw instanceof RawJsonBytes ? (RawJsonBytes) raw : null;
+        }
+        return null;
+    }
+
+    public void invalidate(String url) {
+        cache.invalidate(url);
+    }
+
+    /*
+     * Freshness lifetime of a response, or null when it must not be cached.
+     * */
+    static Duration timeToLive(HttpHeaders headers, Duration defaultTtl) {
+        if (headers == null) {
+            return defaultTtl;
+        }
+
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null) {
+            Long maxAge = null;
+            Long sharedMaxAge = null;
+            for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                String token = directive.trim();
+                if (token.equals("no-store") || token.equals("no-cache") || token.equals("private")) {
+                    return null;
+                }
+                if (token.startsWith("s-maxage=")) {
+                    sharedMaxAge = seconds(token.substring("s-maxage=".length()));
+                }
+                else if (token.startsWith("max-age=")) {
+                    maxAge = seconds(token.substring("max-age=".length()));
+                }
+            }
+            Long lifetime = sharedMaxAge != null ? sharedMaxAge : maxAge;
+            if (lifetime != null) {
+                return lifetime > 0 ? Duration.ofSeconds(lifetime) : null;
+            }
+        }
+
+        long expires = headers.getExpires();
+        if (expires > 0) {
+            long date = responseDate(headers);
+            return expires > date ? Duration.ofMillis(expires - date) : null;
+        }
+        return defaultTtl;
+    }
+
+    /*
+     * A stale-while-revalidate / stale-if-error window of the response, the default otherwise.
+     * */
+    static Duration staleWindow(HttpHeaders headers, String directive, Duration defaultWindow) {
+        String cacheControl = headers == null ? null : headers.getCacheControl();
+        if (cacheControl != null) {
+            for (String token : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                token = token.trim();
+                if (token.startsWith(directive)) {
+                    Long window = seconds(token.substring(directive.length()));
+                    if (window != null && window >= 0) {
+                        return Duration.ofSeconds(window);
+                    }
+                }
+            }
+        }
+        return defaultWindow;
+    }
+
+    private static long responseDate(HttpHeaders headers) {
+        try {
+            long date = headers.getDate();
+            return date > 0 ? date : System.currentTimeMillis();
+        }
+        catch (IllegalArgumentException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    private static Long seconds(String value) {
+        try {
+            return Long.parseLong(value.replace("\"", "").trim());
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        private final long storedAt;
+        private final long ttlNanos;
+        private final long staleWhileRevalidateNanos;
+        private final long staleIfErrorNanos;
+        private JsonNode onHeap;
+        private OffHeapSegmentStore.Handle offHeap;
+        private boolean rawJson;
+        private int weight;
+
+        private Entry(long storedAt, long ttlNanos, long staleWhileRevalidateNanos, long staleIfErrorNanos) {
+            this.storedAt = storedAt;
+            this.ttlNanos = ttlNanos;
+            this.staleWhileRevalidateNanos = staleWhileRevalidateNanos;
+            this.staleIfErrorNanos = staleIfErrorNanos;
+        }
+
+        private long retainNanos() {
+            return ttlNanos + Math.max(staleWhileRevalidateNanos, staleIfErrorNanos);
+        }
+    }
+
+    /*
+     * A looked up payload with its age at lookup time.
+     * */
+    public static final class CachedResponse {
+        private final JsonNode jsonNode;
+        private final long ageNanos;
+        private final long ttlNanos;
+        private final long staleWhileRevalidateNanos;
+        private final long staleIfErrorNanos;
+
+        private CachedResponse(JsonNode jsonNode, long ageNanos, long ttlNanos, long staleWhileRevalidateNanos, long staleIfErrorNanos) {
+            this.jsonNode = jsonNode;
+            this.ageNanos = ageNanos;
+            this.ttlNanos = ttlNanos;
+            this.staleWhileRevalidateNanos = staleWhileRevalidateNanos;
+            this.staleIfErrorNanos = staleIfErrorNanos;
+        }
+
+        public JsonNode getJsonNode() {
+            return jsonNode;
+        }
+
+        public boolean isFresh() {
+            return ageNanos < ttlNanos;
+        }
+
+        /*
+         * Stale but within the hard limit: served as is while a refresh runs.
+         * */
+        public boolean isRevalidatable() {
+            return !isFresh() && ageNanos < ttlNanos + staleWhileRevalidateNanos;
+        }
+
+        public boolean isUsableOnError() {
+            return ageNanos < ttlNanos + staleIfErrorNanos;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.epoxy.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/*
+ * Runs the loads of one request with at most maxConcurrency in flight, starting the
+ * waiting entry with the highest priority (input order among equals) whenever one
+ * finishes. Each entry gets its future up front; cancelling it before the entry was
+ * started drops it from the queue, afterwards it cancels the running load.
+ * With an admission, every load also holds a permit of the global upstream budget.
+ * With deadlines, an entry's deadline is taken when it is queued, so the wait for a slot
+ * or a permit counts against it: an entry still queued at its deadline, or only reaching
+ * a slot after it, completes with the expired value and is never loaded.
+ * */
+public class BatchDispatcher<T, V> implements UpstreamAdmission.Lane {
+
+    private final int maxConcurrency;
+    private final UpstreamAdmission admission;
+    private final Function<T, Deadline> deadline;
+    private final BiFunction<T, Deadline, CompletableFuture<V>> loader;
+    private final Function<T, V> expired;
+    private final PriorityQueue<Pending<T, V>> queue;
+    private int sequence;
+    private int running;
+    private int granted;
+    private boolean draining;
+    private boolean redrain;
+
+    public BatchDispatcher(int maxConcurrency, ToIntFunction<T> priority, Function<T, CompletableFuture<V>> loader) {
+        this(maxConcurrency, null, priority, loader);
+    }
+
+    public BatchDispatcher(int maxConcurrency, UpstreamAdmission admission, ToIntFunction<T> priority, Function<T, CompletableFuture<V>> loader) {
+        this(maxConcurrency, admission, priority, null, (entry, entryDeadline) -> loader.apply(entry), null);
+    }
+
+    public BatchDispatcher(int maxConcurrency, UpstreamAdmission admission, ToIntFunction<T> priority, Function<T, Deadline> deadline,
+                           BiFunction<T, Deadline, CompletableFuture<V>> loader, Function<T, V> expired) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.admission = admission;
+        this.deadline = deadline;
+        this.loader = loader;
+        this.expired = expired;
+        this.queue = new PriorityQueue<>(Comparator
+                .<Pending<T, V>>comparingInt(pending -> -priority.applyAsInt(pending.entry))
+                .thenComparingInt(pending -> pending.sequence));
+    }
+
+    public List<CompletableFuture<V>> dispatch(List<T> entries) {
+        List<CompletableFuture<V>> futures = enqueue(entries);
+        start();
+        return futures;
+    }
+
+    /*
+     * Queues the entries without starting them, so callers can attach their completion
+     * handlers (e.g. fail-fast) before the first load can possibly complete.
+     * */
+    public List<CompletableFuture<V>> enqueue(List<T> entries) {
+        List<Pending<T, V>> pendings = new ArrayList<>(entries.size());
+        for (T entry : entries) {
+            pendings.add(new Pending<>(entry, deadline == null ? null : deadline.apply(entry)));
+        }
+        List<CompletableFuture<V>> futures = new ArrayList<>(entries.size());
+        synchronized (this) {
+            for (Pending<T, V> pending : pendings) {
+                pending.sequence = sequence++;
+                futures.add(pending.result);
+                queue.add(pending);
+            }
+        }
+        pendings.forEach(pending -> {
+            if (pending.deadline != null) {
+                expireAt(pending);
+            }
+        });
+        return futures;
+    }
+
+    public void start() {
+        drain();
+    }
+
+    @Override
+    public void grant() {
+        synchronized (this) {
+            granted++;
+        }
+        drain();
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /*
+     * Starts entries until a limit is reached. A load completing inline (a cache hit)
+     * re-enters here; it only flags another pass, so thousands of cached entries do not
+     * recurse through the stack. Permits granted but no longer needed are given back.
+     * */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                redrain = true;
+                return;
+            }
+            draining = true;
+        }
+        int surplus = 0;
+        while (true) {
+            Pending<T, V> next = null;
+            synchronized (this) {
+                if (running < maxConcurrency && hasLive()) {
+                    if (admission == null || granted > 0) {
+                        granted -= admission == null ? 0 : 1;
+                        next = queue.poll();
+                        next.taken = true;
+                        running++;
+                    }
+                }
+                else if (redrain) {
+                    redrain = false;
+                    continue;
+                }
+                else {
+                    surplus = granted;
+                    granted = 0;
+                    draining = false;
+                    break;
+                }
+            }
+            if (next != null) {
+                start(next);
+            }
+            else if (admission.tryAcquire(this)) {
+                synchronized (this) {
+                    granted++;
+                }
+            }
+            else {
+                /* in line for a permit: grant() brings us back */
+                synchronized (this) {
+                    if (!redrain) {
+                        draining = false;
+                        break;
+                    }
+                    redrain = false;
+                }
+            }
+        }
+        for (int i = 0; i < surplus; i++) {
+            admission.release();
+        }
+    }
+
+    private boolean hasLive() {
+        while (!queue.isEmpty() && (queue.peek().taken || queue.peek().result.isDone())) {
+            /* expired, cancelled (or failed fast) while waiting */
+            queue.poll();
+        }
+        return !queue.isEmpty();
+    }
+
+    /*
+     * Expires the entry at its deadline unless it was started by then.
+     * */
+    private void expireAt(Pending<T, V> pending) {
+        CompletableFuture<Void> expiry = new CompletableFuture<Void>()
+                .completeOnTimeout(null, pending.deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        expiry.thenRun(() -> {
+            synchronized (this) {
+                if (pending.taken) {
+                    return;
+                }
+                pending.taken = true;
+            }
+            expire(pending.entry).whenComplete((value, ex) -> {
+                if (ex != null) {
+                    pending.result.completeExceptionally(ex);
+                }
+                else {
+                    pending.result.complete(value);
+                }
+            });
+        });
+        pending.result.whenComplete((value, ex) -> expiry.cancel(false));
+    }
+
+    private CompletableFuture<V> expire(T entry) {
+        try {
+            return CompletableFuture.completedFuture(expired.apply(entry));
+        }
+        catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void start(Pending<T, V> pending) {
+        CompletableFuture<V> load;
+        try {
+            /* a permit granted after the deadline is handed straight back, without a call */
+            load = pending.deadline != null && pending.deadline.isExpired()
+                    ? expire(pending.entry)
+                    : loader.apply(pending.entry, pending.deadline);
+        }
+        catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        Cancellation.propagate(pending.result, load);
+        load.whenComplete((value, ex) -> {
+            synchronized (this) {
+                running--;
+            }
+            if (admission != null) {
+                admission.release();
+            }
+            if (ex != null) {
+                pending.result.completeExceptionally(ex);
+            }
+            else {
+                pending.result.complete(value);
+            }
+            drain();
+        });
+    }
+
+    private static final class Pending<T, V> {
+        private final T entry;
+        private final Deadline deadline;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private int sequence;
+        private boolean taken;
+
+        private Pending(T entry, Deadline deadline) {
+            this.entry = entry;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.epoxy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/*
+ * Abort handle of one upstream call. The blocking HTTP client registers its in-flight
+ * request on the handle of the call running on the current thread, see current(), so
+ * cancelling the call's future tears down the exchange instead of letting it run on.
+ * */
+public final class Cancellation {
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> AT_DEADLINE = new ThreadLocal<>();
+
+    private final List<Runnable> actions = new ArrayList<>();
+    private boolean cancelled;
+
+    public static Cancellation current() {
+        return CURRENT.get();
+    }
+
+    /*
+     * Cancels the source once the dependent future is cancelled. CompletableFuture only
+     * propagates completion forward, so a stage derived with thenApply/handle never
+     * reaches the work it was derived from on its own.
+     * */
+    public static <T> CompletableFuture<T> propagate(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((value, ex) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    /*
+     * Cancels the future because its deadline passed. Cancellation runs the dependents on
+     * this thread, so the calls it tears down see atDeadline() and can tell a deadline from
+     * a failed sibling, a losing hedge or a client that went away.
+     * */
+    public static boolean cancelAtDeadline(CompletableFuture<?> future) {
+        AT_DEADLINE.set(Boolean.TRUE);
+        try {
+            return future.cancel(true);
+        }
+        finally {
+            AT_DEADLINE.remove();
+        }
+    }
+
+    public static boolean atDeadline() {
+        return AT_DEADLINE.get() != null;
+    }
+
+    /*
+     * Cancels the handle once the future is cancelled.
+     * */
+    public void cancelWith(CompletableFuture<?> future) {
+        future.whenComplete((value, ex) -> {
+            if (future.isCancelled()) {
+                cancel();
+            }
+        });
+    }
+
+    /*
+     * Runs the action on cancel, right away when the call is already cancelled.
+     * */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                actions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    public boolean cancel() {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            pending = new ArrayList<>(actions);
+            actions.clear();
+        }
+        pending.forEach(Runnable::run);
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public <T> T run(Supplier<T> call) {
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        }
+        finally {
+            if (previous == null) {
+                CURRENT.remove();
+            }
+            else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.epoxy.util;
+
+import com.epoxy.model.constants.CircuitState;
+
+/*
+ * Count-based circuit breaker. CLOSED records the outcome of the last windowSize calls
+ * and opens once at least minimumCalls were seen and the failure or slow-call rate reaches
+ * its threshold. OPEN rejects every call until waitInOpenMs has passed, then HALF_OPEN lets
+ * permittedCallsInHalfOpen trial calls through and closes or re-opens on their rates.
+ * */
+public class CircuitBreaker {
+
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationMs;
+    private final long waitInOpenNanos;
+    private final int permittedCallsInHalfOpen;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private final byte[] outcomes;
+    private int position;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private long openedAtNanos;
+    private int halfOpenPermits;
+    private long notPermitted;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                          long slowCallDurationMs, long waitInOpenMs, int permittedCallsInHalfOpen) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMs = slowCallDurationMs;
+        this.waitInOpenNanos = waitInOpenMs * 1_000_000;
+        this.permittedCallsInHalfOpen = Math.max(1, permittedCallsInHalfOpen);
+        this.outcomes = new byte[this.windowSize];
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == CircuitState.OPEN && System.nanoTime() - openedAtNanos >= waitInOpenNanos) {
+            transition(CircuitState.HALF_OPEN);
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (halfOpenPermits > 0) {
+                    halfOpenPermits--;
+                    return true;
+                }
+                notPermitted++;
+                return false;
+            case OPEN:
+            default:
+                notPermitted++;
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess(long durationMs) {
+        record(durationMs >= slowCallDurationMs ? SLOW : 0);
+    }
+
+    public synchronized void onFailure(long durationMs) {
+        record((byte) (FAILURE | (durationMs >= slowCallDurationMs ? SLOW : 0)));
+    }
+
+    /*
+     * A permitted call that ended without an outcome (cancelled), its half-open permit is returned.
+     * */
+    public synchronized void onIgnored() {
+        if (state == CircuitState.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    private void record(byte outcome) {
+        if (state == CircuitState.OPEN) {
+            return;
+        }
+        if (calls == windowSize) {
+            forget(outcomes[position]);
+        }
+        else {
+            calls++;
+        }
+        outcomes[position] = outcome;
+        position = (position + 1) % windowSize;
+        failures += (outcome & FAILURE) != 0 ? 1 : 0;
+        slowCalls += (outcome & SLOW) != 0 ? 1 : 0;
+
+        if (state == CircuitState.HALF_OPEN) {
+            if (calls >= permittedCallsInHalfOpen) {
+                transition(aboveThreshold() ? CircuitState.OPEN : CircuitState.CLOSED);
+            }
+        }
+        else if (calls >= minimumCalls && aboveThreshold()) {
+            transition(CircuitState.OPEN);
+        }
+    }
+
+    private void forget(byte outcome) {
+        failures -= (outcome & FAILURE) != 0 ? 1 : 0;
+        slowCalls -= (outcome & SLOW) != 0 ? 1 : 0;
+    }
+
+    private boolean aboveThreshold() {
+        return failures * 100 >= failureRateThreshold * calls || slowCalls * 100 >= slowCallRateThreshold * calls;
+    }
+
+    private void transition(CircuitState next) {
+        state = next;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        position = 0;
+        if (next == CircuitState.OPEN) {
+            openedAtNanos = System.nanoTime();
+        }
+        halfOpenPermits = next == CircuitState.HALF_OPEN ? permittedCallsInHalfOpen : 0;
+    }
+
+    public synchronized CircuitState getState() {
+        if (state == CircuitState.OPEN && System.nanoTime() - openedAtNanos >= waitInOpenNanos) {
+            transition(CircuitState.HALF_OPEN);
+        }
+        return state;
+    }
+
+    public synchronized int getCalls() {
+        return calls;
+    }
+
+    public synchronized float getFailureRate() {
+        return calls == 0 ? 0 : failures * 100f / calls;
+    }
+
+    public synchronized float getSlowCallRate() {
+        return calls == 0 ? 0 : slowCalls * 100f / calls;
+    }
+
+    public synchronized long getNotPermitted() {
+        return notPermitted;
+    }
+}
@@ -0,0 +1,57 @@
+package com.epoxy.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/*
+ * Ketama-style ring: every node is placed at virtualNodes points (MD5 of "name#i") and a key
+ * belongs to the first point at or after its own hash. Adding or removing a node only moves
+ * the keys of the arcs it gains or loses, about 1/n of them, and the same node list gives the
+ * same placement on every instance.
+ * */
+public final class ConsistentHashRing<T> {
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<T> nodes, int virtualNodes, Function<T, String> name) {
+        for (T node : nodes) {
+            for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                ring.put(hash(name.apply(node) + "#" + i), node);
+            }
+        }
+    }
+
+    /*
+     * Null only when the ring has no nodes.
+     * */
+    public T nodeFor(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String key) {
+        byte[] digest = md5().digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
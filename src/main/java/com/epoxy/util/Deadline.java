@@ -0,0 +1,51 @@
+package com.epoxy.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Point in time by which an upstream call has to finish. The deadline of the call
+ * running on the current thread is exposed to the HTTP client through current().
+ * */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    public <T> T run(Supplier<T> call) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        }
+        finally {
+            if (previous == null) {
+                CURRENT.remove();
+            }
+            else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.epoxy.util;
+
+import com.epoxy.model.EndpointList;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.function.Function;
+
+/*
+ * Bounded cache from the raw base64 {apis} path segment to its decoded endpoint list.
+ * Malformed segments are cached too, so a client repeating a bad request is rejected
+ * without decoding it again.
+ * */
+public class EndpointListCache {
+
+    private final Cache<String, EndpointList> cache;
+
+    public EndpointListCache(long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    public EndpointList get(String base64Apis, Function<String, EndpointList> resolver) {
+        return cache.get(base64Apis, resolver);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public void bindTo(MeterRegistry registry, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+}
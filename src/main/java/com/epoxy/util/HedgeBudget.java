@@ -0,0 +1,37 @@
+package com.epoxy.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Caps hedged requests to a percentage of the primary ones: every primary request earns
+ * percent/100 of a hedge, and a hedge is only sent when a whole one has been earned.
+ * Unused credit accumulates up to maxBurst hedges.
+ * */
+public class HedgeBudget {
+
+    private static final long HEDGE_COST = 100;
+
+    private final long earnedPerRequest;
+    private final long maxCredit;
+    private final AtomicLong credit = new AtomicLong();
+
+    public HedgeBudget(int percent, int maxBurst) {
+        this.earnedPerRequest = Math.max(0, percent);
+        this.maxCredit = HEDGE_COST * Math.max(1, maxBurst);
+    }
+
+    public void onRequest() {
+        credit.accumulateAndGet(earnedPerRequest, (current, earned) -> Math.min(maxCredit, current + earned));
+    }
+
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = credit.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+        } while (!credit.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+}
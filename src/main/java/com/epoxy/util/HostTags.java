@@ -0,0 +1,38 @@
+package com.epoxy.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Bounds the values of a host meter tag. Hosts come from client-supplied URLs, so only the
+ * first maxHosts distinct hosts get a tag of their own and every later one is tagged "other",
+ * which keeps the number of meters per name bounded.
+ * */
+public class HostTags {
+
+    public static final String OTHER = "other";
+
+    private final int maxHosts;
+    private final Set<String> hosts = ConcurrentHashMap.newKeySet();
+
+    public HostTags(int maxHosts) {
+        this.maxHosts = Math.max(0, maxHosts);
+    }
+
+    public String tag(String host) {
+        if (hosts.contains(host)) {
+            return host;
+        }
+        synchronized (this) {
+            if (hosts.size() < maxHosts) {
+                hosts.add(host);
+                return host;
+            }
+        }
+        return OTHER;
+    }
+
+    public int size() {
+        return hosts.size();
+    }
+}
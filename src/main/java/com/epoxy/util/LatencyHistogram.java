@@ -0,0 +1,102 @@
+package com.epoxy.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock-free latency histogram with exponential buckets (1 ms to ~1 min, ~25% apart) over a
+ * sliding window: samples go to the current window, percentiles read the current and the
+ * previous one, and the windows rotate every windowMs so old behaviour ages out.
+ * Percentiles are reported as the upper bound of their bucket.
+ * */
+public class LatencyHistogram {
+
+    private static final double GROWTH = 1.25;
+    private static final long[] BOUNDS_MS = bounds(60000);
+
+    private final long windowNanos;
+    private final AtomicLong windowStart;
+    private volatile AtomicLongArray current = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BOUNDS_MS.length + 1);
+
+    public LatencyHistogram(long windowMs) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.windowStart = new AtomicLong(System.nanoTime());
+    }
+
+    public void record(long millis) {
+        rotate();
+        current.incrementAndGet(bucket(millis));
+    }
+
+    public long count() {
+        rotate();
+        long count = 0;
+        for (int i = 0; i <= BOUNDS_MS.length; i++) {
+            count += current.get(i) + previous.get(i);
+        }
+        return count;
+    }
+
+    /*
+     * Latency below which the given fraction of the samples fall, -1 without samples.
+     * */
+    public long percentile(double quantile) {
+        rotate();
+        long[] counts = new long[BOUNDS_MS.length + 1];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = current.get(i) + previous.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS_MS[i];
+            }
+        }
+        return BOUNDS_MS[BOUNDS_MS.length - 1];
+    }
+
+    private void rotate() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        /* a second idle window drops everything, otherwise the current window becomes the previous one */
+        previous = now - start < 2 * windowNanos ? current : new AtomicLongArray(BOUNDS_MS.length + 1);
+        current = new AtomicLongArray(BOUNDS_MS.length + 1);
+    }
+
+    private static int bucket(long millis) {
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            if (millis <= BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS_MS.length;
+    }
+
+    private static long[] bounds(long maxMs) {
+        int size = (int) Math.ceil(Math.log(maxMs) / Math.log(GROWTH)) + 1;
+        long[] bounds = new long[size];
+        double bound = 1;
+        long last = 0;
+        int i = 0;
+        while (i < size) {
+            long next = Math.max(last + 1, Math.round(bound));
+            bounds[i++] = next;
+            last = next;
+            bound *= GROWTH;
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,189 @@
+package com.epoxy.util;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Byte store outside the Java heap: a ring of fixed-size direct ByteBuffer segments
+ * written append-only. When the ring is full the oldest segment is recycled, which
+ * evicts every payload in it at once (FIFO by segment), so the store never holds more
+ * than capacityBytes and never needs compaction. A handle stays readable until its
+ * segment is recycled; readers and the recycling writer exclude each other per segment.
+ * Segments are allocated on first use.
+ * */
+public class OffHeapSegmentStore {
+
+    @FunctionalInterface
+    public interface PayloadReader<T> {
+        T read(InputStream payload) throws IOException;
+    }
+
+    private final int segmentBytes;
+    private final Segment[] segments;
+    private final AtomicLong evictedSegments = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private int current;
+
+    /*
+     * The capacity is rounded down to whole segments, so it has to hold at least one:
+     * misconfigured sizes fail at startup rather than allocating more than asked for.
+     * */
+    public OffHeapSegmentStore(long capacityBytes, int segmentBytes) {
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("segment-bytes must be positive: " + segmentBytes);
+        }
+        if (capacityBytes < segmentBytes) {
+            throw new IllegalArgumentException("capacity-bytes " + capacityBytes + " is smaller than segment-bytes " + segmentBytes);
+        }
+        long segmentCount = capacityBytes / segmentBytes;
+        if (segmentCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity-bytes " + capacityBytes + " needs more than " + Integer.MAX_VALUE + " segments");
+        }
+        this.segmentBytes = segmentBytes;
+        this.segments = new Segment[(int) segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /*
+     * Copies the payload off-heap, null when it is larger than a segment.
+     * */
+    public Handle put(byte[] payload) {
+        if (payload.length > segmentBytes) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        synchronized (this) {
+            Segment segment = segments[current];
+            if (segment.buffer == null) {
+                segment.buffer = ByteBuffer.allocateDirect(segmentBytes);
+            }
+            else if (segment.position + payload.length > segmentBytes) {
+                current = (current + 1) % segments.length;
+                segment = segments[current];
+                recycle(segment);
+            }
+            int offset = segment.position;
+            segment.buffer.duplicate().position(offset).put(payload);
+            segment.position = offset + payload.length;
+            return new Handle(current, segment.generation, offset, payload.length);
+        }
+    }
+
+    /*
+     * Reads the payload in place, null when its segment was recycled in the meantime.
+     * */
+    public <T> T read(Handle handle, PayloadReader<T> reader) throws IOException {
+        Segment segment = segments[handle.segment];
+        segment.lock.readLock().lock();
+        try {
+            if (segment.generation != handle.generation || segment.buffer == null) {
+                return null;
+            }
+            ByteBuffer payload = segment.buffer.duplicate();
+            payload.position(handle.offset).limit(handle.offset + handle.length);
+            return reader.read(new ByteBufferBackedInputStream(payload));
+        }
+        finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(Handle handle) {
+        return segments[handle.segment].generation == handle.generation;
+    }
+
+    private void recycle(Segment segment) {
+        segment.lock.writeLock().lock();
+        try {
+            if (segment.buffer == null) {
+                segment.buffer = ByteBuffer.allocateDirect(segmentBytes);
+            }
+            else {
+                evictedSegments.incrementAndGet();
+            }
+            segment.generation++;
+            segment.position = 0;
+        }
+        finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.position;
+        }
+        return used;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        long allocated = 0;
+        for (Segment segment : segments) {
+            allocated += segment.buffer == null ? 0 : segmentBytes;
+        }
+        return allocated;
+    }
+
+    public long getCapacityBytes() {
+        return (long) segments.length * segmentBytes;
+    }
+
+    public long getEvictedSegments() {
+        return evictedSegments.get();
+    }
+
+    public void bindTo(MeterRegistry registry, String name) {
+        Gauge.builder(name + ".used", this, OffHeapSegmentStore::getUsedBytes)
+                .description("Bytes of payloads written to live off-heap segments")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(name + ".allocated", this, OffHeapSegmentStore::getAllocatedBytes)
+                .description("Direct memory allocated for off-heap segments")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(name + ".capacity", this, OffHeapSegmentStore::getCapacityBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(name + ".evicted.segments", evictedSegments, AtomicLong::get)
+                .description("Segments recycled, evicting every payload they held")
+                .register(registry);
+        FunctionCounter.builder(name + ".rejected", rejected, AtomicLong::get)
+                .description("Payloads larger than a segment, kept on-heap instead")
+                .register(registry);
+    }
+
+    public static final class Handle {
+        private final int segment;
+        private final long generation;
+        private final int offset;
+        private final int length;
+
+        private Handle(int segment, long generation, int offset, int length) {
+            this.segment = segment;
+            this.generation = generation;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+    }
+
+    private static final class Segment {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private ByteBuffer buffer;
+        private volatile long generation;
+        private int position;
+    }
+}
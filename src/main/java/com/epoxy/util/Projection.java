@@ -0,0 +1,232 @@
+package com.epoxy.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringGeneratorDelegate;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/*
+ * Fields kept from an upstream payload: comma separated JSON Pointers (/address/city, /items/0)
+ * or JSONPath expressions of the $.a.b, $.a[0], $.a[*], $.* and $['a'] subset. Applied to the
+ * token stream, so values off every path are skipped by the parser and never materialized;
+ * the values on a path are kept whole, along with the objects and arrays enclosing them.
+ * */
+public final class Projection {
+
+    private final List<List<Step>> paths;
+    private final String key;
+
+    private Projection(List<List<Step>> paths) {
+        this.paths = paths;
+        TreeSet<String> canonical = new TreeSet<>();
+        for (List<Step> path : paths) {
+            StringBuilder rendered = new StringBuilder();
+            path.forEach(step -> rendered.append('/').append(step));
+            canonical.add(rendered.toString());
+        }
+        this.key = String.join(",", canonical);
+    }
+
+    /*
+     * Null when fields selects the whole payload: blank, or a lone "$". An empty member, or one
+     * selecting the whole payload next to others, is rejected rather than dropping the projection.
+     * */
+    public static Projection parse(String fields) {
+        if (fields == null || fields.isBlank() || "$".equals(fields.trim())) {
+            return null;
+        }
+        List<List<Step>> paths = new ArrayList<>();
+        for (String field : fields.split(",", -1)) {
+            String expression = field.trim();
+            if (expression.isEmpty()) {
+                throw new IllegalArgumentException("Empty path in " + fields);
+            }
+            List<Step> path = expression.startsWith("$") ? parseJsonPath(expression) : parsePointer(expression);
+            if (path.isEmpty()) {
+                throw new IllegalArgumentException("Whole payload selected next to other paths in " + fields);
+            }
+            paths.add(path);
+        }
+        return new Projection(paths);
+    }
+
+    /*
+     * Canonical form of the paths, for cache keys: the same selection gives the same key.
+     * */
+    public String key() {
+        return key;
+    }
+
+    public JsonParser filter(JsonParser parser) {
+        return new FilteringParserDelegate(parser, new PathFilter(paths, 0), TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+    }
+
+    public JsonGenerator filter(JsonGenerator generator) {
+        return new FilteringGeneratorDelegate(generator, new PathFilter(paths, 0), TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    private static List<Step> parsePointer(String pointer) {
+        List<Step> path = new ArrayList<>();
+        if (pointer.isEmpty()) {
+            return path;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Not a JSON Pointer: " + pointer);
+        }
+        for (String token : pointer.substring(1).split("/", -1)) {
+            String name = token.replace("~1", "/").replace("~0", "~");
+            path.add(new Step(name, arrayIndex(name)));
+        }
+        return path;
+    }
+
+    private static List<Step> parseJsonPath(String jsonPath) {
+        List<Step> path = new ArrayList<>();
+        int i = 1;
+        while (i < jsonPath.length()) {
+            char c = jsonPath.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < jsonPath.length() && jsonPath.charAt(end) != '.' && jsonPath.charAt(end) != '[') {
+                    end++;
+                }
+                String name = jsonPath.substring(i + 1, end);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty name in " + jsonPath);
+                }
+                path.add("*".equals(name) ? Step.WILDCARD : new Step(name, -1));
+                i = end;
+            }
+            else if (c == '[') {
+                int end = jsonPath.indexOf(']', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed [ in " + jsonPath);
+                }
+                path.add(bracketStep(jsonPath.substring(i + 1, end).trim(), jsonPath));
+                i = end + 1;
+            }
+            else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' in " + jsonPath);
+            }
+        }
+        return path;
+    }
+
+    private static Step bracketStep(String selector, String jsonPath) {
+        if ("*".equals(selector)) {
+            return Step.WILDCARD;
+        }
+        if (selector.length() >= 2 && (selector.charAt(0) == '\'' || selector.charAt(0) == '"')
+                && selector.charAt(selector.length() - 1) == selector.charAt(0)) {
+            return new Step(selector.substring(1, selector.length() - 1), -1);
+        }
+        int index = arrayIndex(selector);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unsupported selector [" + selector + "] in " + jsonPath);
+        }
+        return new Step(null, index);
+    }
+
+    private static int arrayIndex(String token) {
+        if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && token.charAt(0) == '0')) {
+            return -1;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(token);
+    }
+
+    /*
+     * One path step: a property name, an array index, both (numeric pointer tokens) or any.
+     * */
+    private static final class Step {
+
+        private static final Step WILDCARD = new Step(null, -1);
+
+        private final String name;
+        private final int index;
+
+        private Step(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        private boolean matchesProperty(String property) {
+            return this == WILDCARD || property.equals(name);
+        }
+
+        private boolean matchesElement(int element) {
+            return this == WILDCARD || element == index;
+        }
+
+        /*
+         * Pointer escaping for names; ~* and ~[n] are not valid escapes, so they can not clash with a name.
+         * */
+        @Override
+        public String toString() {
+            if (this == WILDCARD) {
+                return "~*";
+            }
+            return name != null ? name.replace("~", "~0").replace("/", "~1") : "~[" + index + "]";
+        }
+    }
+
+    /*
+     * Filter at one depth: the paths still matching, all at the same step.
+     * */
+    private static final class PathFilter extends TokenFilter {
+
+        private final List<List<Step>> paths;
+        private final int depth;
+
+        private PathFilter(List<List<Step>> paths, int depth) {
+            this.paths = paths;
+            this.depth = depth;
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            List<List<Step>> matching = new ArrayList<>();
+            for (List<Step> path : paths) {
+                if (path.get(depth).matchesProperty(name)) {
+                    if (path.size() == depth + 1) {
+                        return TokenFilter.INCLUDE_ALL;
+                    }
+                    matching.add(path);
+                }
+            }
+            return matching.isEmpty() ? null : new PathFilter(matching, depth + 1);
+        }
+
+        @Override
+        public TokenFilter includeElement(int index) {
+            List<List<Step>> matching = new ArrayList<>();
+            for (List<Step> path : paths) {
+                if (path.get(depth).matchesElement(index)) {
+                    if (path.size() == depth + 1) {
+                        return TokenFilter.INCLUDE_ALL;
+                    }
+                    matching.add(path);
+                }
+            }
+            return matching.isEmpty() ? null : new PathFilter(matching, depth + 1);
+        }
+
+        @Override
+        protected boolean _includeScalar() {
+            return false;
+        }
+    }
+}
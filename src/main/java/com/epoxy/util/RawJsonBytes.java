@@ -0,0 +1,176 @@
+package com.epoxy.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Already valid UTF-8 JSON that generators copy into the output as is
+ * (JsonGenerator.writeRawValue), without building or re-serializing a tree.
+ * Binary generators (Smile, CBOR) can not take raw JSON, so for them it is transcoded token by token.
+ * */
+public final class RawJsonBytes implements SerializableString, JsonSerializable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final byte[] json;
+
+    public RawJsonBytes(byte[] json) {
+        this.json = json;
+    }
+
+    /*
+     * Passthrough node of the payload, serialized through this class in every format.
+     * */
+    public static POJONode node(byte[] json) {
+        return new POJONode(new RawValue((JsonSerializable) new RawJsonBytes(json)));
+    }
+
+    public int length() {
+        return json.length;
+    }
+
+    /*
+     * Line breaks can only be whitespace between tokens, strings hold them escaped.
+     * */
+    public boolean isSingleLine() {
+        for (byte b : json) {
+            if (b == '\n' || b == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Writes the value token by token, so the output has the generator's own layout.
+     * */
+    public void copyTo(JsonGenerator generator) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    @Override
+    public String getValue() {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return JsonStringEncoder.getInstance().quoteAsString(getValue());
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return json;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return append(asQuotedUTF8(), buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        return append(asQuotedChars(), buffer, offset);
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        return append(json, buffer, offset);
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        return append(getValue().toCharArray(), buffer, offset);
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        byte[] quoted = asQuotedUTF8();
+        out.write(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(json);
+        return json.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+        return put(asQuotedUTF8(), buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) {
+        return put(json, buffer);
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        if (!generator.canWriteBinaryNatively()) {
+            generator.writeRawValue(this);
+            return;
+        }
+        copyTo(generator);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+
+    private static int append(byte[] source, byte[] buffer, int offset) {
+        if (offset + source.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(source, 0, buffer, offset, source.length);
+        return source.length;
+    }
+
+    private static int append(char[] source, char[] buffer, int offset) {
+        if (offset + source.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(source, 0, buffer, offset, source.length);
+        return source.length;
+    }
+
+    private static int put(byte[] source, ByteBuffer buffer) {
+        if (source.length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(source);
+        return source.length;
+    }
+}
@@ -0,0 +1,128 @@
+package com.epoxy.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+ * Shares one in-flight load between all concurrent callers asking for the same key.
+ * Every caller receives its own dependent future, so timing it out or cancelling it
+ * leaves the shared load and the other callers untouched. Once every caller has
+ * cancelled, nobody is waiting for the result any more and the load itself is cancelled.
+ * */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public CompletableFuture<V> load(K key, Function<K, CompletableFuture<V>> loader) {
+        Flight<V> created = new Flight<>();
+        /* callers are counted under the map's per-key lock, so the count can not reach zero while someone joins */
+        Flight<V> flight = inFlight.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return created;
+            }
+            existing.callers++;
+            return existing;
+        });
+        if (flight != created) {
+            coalesced.incrementAndGet();
+            return join(key, flight);
+        }
+
+        loads.incrementAndGet();
+        CompletableFuture<V> result = join(key, flight);
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.apply(key);
+        }
+        catch (RuntimeException e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        flight.loading = loading;
+        /* every caller may have left while the loader was still starting the load */
+        if (flight.abandoned && loading.cancel(true)) {
+            cancelled.incrementAndGet();
+        }
+        loading.whenComplete((value, ex) -> {
+            inFlight.remove(key, flight);
+            if (ex != null) {
+                flight.shared.completeExceptionally(ex);
+            }
+            else {
+                flight.shared.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<V> join(K key, Flight<V> flight) {
+        CompletableFuture<V> copy = flight.shared.copy();
+        copy.whenComplete((value, ex) -> {
+            if (copy.isCancelled()) {
+                leave(key, flight);
+            }
+        });
+        return copy;
+    }
+
+    private void leave(K key, Flight<V> flight) {
+        boolean[] abandoned = new boolean[1];
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != flight || --current.callers > 0) {
+                return current;
+            }
+            abandoned[0] = true;
+            return null;
+        });
+        if (!abandoned[0]) {
+            return;
+        }
+        flight.abandoned = true;
+        CompletableFuture<V> loading = flight.loading;
+        if (loading != null && loading.cancel(true)) {
+            cancelled.incrementAndGet();
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    public void bindTo(MeterRegistry registry, String name) {
+        FunctionCounter.builder(name + ".loads", this, SingleFlight::getLoads)
+                .description("Loads started by a leading caller")
+                .register(registry);
+        FunctionCounter.builder(name + ".coalesced", this, SingleFlight::getCoalesced)
+                .description("Callers that joined a load already in flight")
+                .register(registry);
+        FunctionCounter.builder(name + ".cancelled", this, SingleFlight::getCancelled)
+                .description("In-flight loads cancelled because every caller gave up")
+                .register(registry);
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+        private volatile CompletableFuture<V> loading;
+        private volatile boolean abandoned;
+        private int callers = 1;
+    }
+}
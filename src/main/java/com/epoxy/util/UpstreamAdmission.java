@@ -0,0 +1,151 @@
+package com.epoxy.util;
+
+import com.epoxy.config.exceptions.AdmissionRejectedException;
+import com.epoxy.model.constants.AppConstants;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Global budget of upstream fetches in flight, shared by every request. A request whose
+ * fan-out finds the budget exhausted waits in line as a lane; each released permit goes to
+ * the lane at the head of the line, which then queues again at the back if it needs more,
+ * so concurrent requests take turns instead of the widest one draining the budget.
+ * New requests are rejected right away once the budget is exhausted and maxWaitingRequests
+ * requests are already waiting.
+ * */
+public class UpstreamAdmission {
+
+    public interface Lane {
+        /*
+         * Hands the lane one permit; it must eventually be given back with release().
+         * */
+        void grant();
+    }
+
+    private final int maxInFlight;
+    private final int maxWaitingRequests;
+    private final LinkedHashSet<Lane> waiting = new LinkedHashSet<>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    /* releases of the current thread not handed over yet, null while it is not releasing */
+    private final ThreadLocal<int[]> releasing = new ThreadLocal<>();
+    private int inFlight;
+
+    public UpstreamAdmission(int maxInFlight, int maxWaitingRequests) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxWaitingRequests = Math.max(0, maxWaitingRequests);
+    }
+
+    public void admit() {
+        synchronized (this) {
+            if (inFlight < maxInFlight || waiting.size() < maxWaitingRequests) {
+                admitted.incrementAndGet();
+                return;
+            }
+        }
+        rejected.incrementAndGet();
+        throw new AdmissionRejectedException(AppConstants.TOO_MANY_REQUESTS);
+    }
+
+    /*
+     * Takes a permit when one is free and nobody is waiting, otherwise puts the lane in line.
+     * */
+    public synchronized boolean tryAcquire(Lane lane) {
+        if (inFlight < maxInFlight && waiting.isEmpty()) {
+            inFlight++;
+            return true;
+        }
+        waiting.add(lane);
+        return false;
+    }
+
+    /*
+     * Returns a permit, handing it over to the next lane in line. A lane starting a fetch
+     * that completes inline releases again from inside grant(); that release is only
+     * counted for the current thread and picked up by its loop, so the stack stays flat.
+     * Each thread only hands over the permits it released itself, so a slow grant() never
+     * holds up the releases of other threads.
+     * */
+    public void release() {
+        int[] pending = releasing.get();
+        if (pending != null) {
+            pending[0]++;
+            return;
+        }
+        pending = new int[] {1};
+        releasing.set(pending);
+        try {
+            while (pending[0] > 0) {
+                pending[0]--;
+                Lane next;
+                synchronized (this) {
+                    next = poll();
+                    if (next == null) {
+                        inFlight--;
+                        continue;
+                    }
+                }
+                next.grant();
+            }
+        }
+        finally {
+            releasing.remove();
+        }
+    }
+
+    private Lane poll() {
+        Iterator<Lane> iterator = waiting.iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Lane next = iterator.next();
+        iterator.remove();
+        return next;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaitingRequests() {
+        return waiting.size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            snapshot.put("inFlight", inFlight);
+            snapshot.put("maxInFlight", maxInFlight);
+            snapshot.put("waitingRequests", waiting.size());
+            snapshot.put("maxWaitingRequests", maxWaitingRequests);
+        }
+        snapshot.put("admitted", admitted.get());
+        snapshot.put("rejected", rejected.get());
+        return snapshot;
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("epoxy.upstream.inflight", this, UpstreamAdmission::getInFlight)
+                .description("Upstream fetches holding a permit of the global budget")
+                .register(registry);
+        Gauge.builder("epoxy.upstream.admission.waiting", this, UpstreamAdmission::getWaitingRequests)
+                .description("Requests waiting for an upstream permit")
+                .register(registry);
+        FunctionCounter.builder("epoxy.upstream.admission.admitted", admitted, AtomicLong::get)
+                .description("Requests admitted to fan out")
+                .register(registry);
+        FunctionCounter.builder("epoxy.upstream.admission.rejected", rejected, AtomicLong::get)
+                .description("Requests rejected with 429 because the upstream budget was exhausted")
+                .register(registry);
+    }
+}
@@ -0,0 +1,134 @@
+package com.epoxy.util;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.model.constants.ExecutorMode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Executor for blocking upstream fetches, kept apart from the common ForkJoinPool.
+ * Either a bounded platform thread pool or, on Java 21+, one virtual thread per fetch.
+ * */
+@Slf4j
+public class UpstreamExecutor implements Executor {
+
+    private final ExecutorService delegate;
+    private final ExecutorMode mode;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile Timer queueWait;
+
+    public UpstreamExecutor(ExecutorService delegate, ExecutorMode mode) {
+        this.delegate = delegate;
+        this.mode = mode;
+    }
+
+    public static UpstreamExecutor create(EpoxyProperties.FetchExecutor properties) {
+        if (properties.getMode() == ExecutorMode.VIRTUAL) {
+            ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+            if (virtualThreads != null) {
+                return new UpstreamExecutor(virtualThreads, ExecutorMode.VIRTUAL);
+            }
+            log.warn("Virtual threads are not available on Java {}, falling back to bounded executor", Runtime.version().feature());
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                properties.getMaxThreads(),
+                properties.getMaxThreads(),
+                properties.getKeepAliveMs(), TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                task -> {
+                    Thread thread = new Thread(task, "epoxy-fetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new UpstreamExecutor(pool, ExecutorMode.BOUNDED);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queued.incrementAndGet();
+        long submitted = System.nanoTime();
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                Timer timer = queueWait;
+                if (timer != null) {
+                    timer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                }
+                active.incrementAndGet();
+                try {
+                    task.run();
+                }
+                finally {
+                    active.decrementAndGet();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public ExecutorMode getMode() {
+        return mode;
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        String modeTag = mode.name().toLowerCase();
+        Gauge.builder("epoxy.fetch.executor.queued", this, UpstreamExecutor::getQueued)
+                .tag("mode", modeTag)
+                .description("Upstream fetches waiting for a thread")
+                .register(registry);
+        Gauge.builder("epoxy.fetch.executor.active", this, UpstreamExecutor::getActive)
+                .tag("mode", modeTag)
+                .description("Upstream fetches currently running")
+                .register(registry);
+        FunctionCounter.builder("epoxy.fetch.executor.rejected", rejected, AtomicLong::get)
+                .tag("mode", modeTag)
+                .description("Upstream fetches rejected because the queue was full")
+                .register(registry);
+        queueWait = Timer.builder("epoxy.fetch.executor.queue.wait")
+                .tag("mode", modeTag)
+                .description("Time upstream fetches spent queued before a thread picked them up")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
@@ -2,24 +2,32 @@ package com.epoxy.util;
 
 import com.epoxy.config.exceptions.ApiFailedException;
 import com.epoxy.config.exceptions.EpoxyBadRequestException;
+import com.epoxy.model.BatchEntry;
+import com.epoxy.model.EndpointList;
 import com.epoxy.model.EpoxyRequest;
 import com.epoxy.model.constants.AppConstants;
 import com.epoxy.model.dto.EpoxyRequestDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import static com.epoxy.model.constants.AppConstants.*;
 
 @Component
@@ -29,17 +37,22 @@ public class Util {
     private XmlMapper xmlMapper;
     private ObjectMapper objectMapper;
 
+    @Autowired(required = false)
+    private EndpointListCache endpointListCache;
+
+    @Autowired(required = false)
+    private XmlStreamConverter xmlStreamConverter;
+
     public Util(){
         xmlMapper = new XmlMapper();
         objectMapper = new ObjectMapper();
     }
     public List<String> fromJsonArrayToList(String jsonArray) {
-        Gson gson = new Gson();
-        Type type = new TypeToken<List<String>>() {}.getType();
         List<String> endpoints = null;
 
-        try {
-            endpoints = gson.fromJson(jsonArray,type);
+        try (JsonParser parser = objectMapper.getFactory().createParser(jsonArray)) {
+            parser.enable(JsonReadFeature.ALLOW_SINGLE_QUOTES.mappedFeature());
+            endpoints = readStringArray(parser);
         }
         catch (Exception e){
            log.error("Exception in Util::fromJsonArrayToList() : {}", e.getMessage());
@@ -47,10 +60,39 @@ public class Util {
         return endpoints;
     }
 
+    /*
+     * Token-level read of a flat array of strings, null when the input is anything else.
+     * */
+    private List<String> readStringArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array of endpoint URLs");
+        }
+        List<String> values = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+            values.add(parser.getText());
+        }
+        if (token != JsonToken.END_ARRAY || parser.nextToken() != null) {
+            throw new IOException("Expected an array of endpoint URLs");
+        }
+        return values;
+    }
+
     public JsonNode fromXmlToJson(String response){
         JsonNode jsonNode = null;
         try{
-            jsonNode = xmlMapper.readTree(response);
+            jsonNode = xmlStreamConverter != null ? xmlStreamConverter.readTree(response) : xmlMapper.readTree(response);
+        }
+        catch (Exception e){
+            log.error("Exception in Util::fromXmlToJson() : {}", e.getMessage());
+        }
+        return jsonNode;
+    }
+
+    public JsonNode fromXmlToJson(InputStream response){
+        JsonNode jsonNode = null;
+        try{
+            jsonNode = xmlStreamConverter != null ? xmlStreamConverter.readTree(response) : xmlMapper.readTree(response);
         }
         catch (Exception e){
             log.error("Exception in Util::fromXmlToJson() : {}", e.getMessage());
@@ -69,6 +111,17 @@ public class Util {
         return jsonNode;
     }
 
+    public JsonNode fromStreamToJsonNode(InputStream response){
+        JsonNode jsonNode = null;
+        try{
+            jsonNode = objectMapper.readTree(response);
+        }
+        catch (Exception e){
+            log.error("Exception in Util::fromStreamToJsonNode() : {}", e.getMessage());
+        }
+        return jsonNode;
+    }
+
     public String decodeBase64(String base64Uri){
         byte[] decodedBytes = Base64.getDecoder().decode(base64Uri);
         String jsonArrayString = new String(decodedBytes, StandardCharsets.UTF_8);
@@ -80,6 +133,49 @@ public class Util {
         }
         return fromStringToJsonNode(response);
     }
+
+    public JsonNode parseApiResponse(InputStream response, MediaType mediaType) {
+        if(MediaType.APPLICATION_XML.isCompatibleWith(mediaType)){
+            return fromXmlToJson(response);
+        }
+        return fromStreamToJsonNode(response);
+    }
+
+    /*
+     * Parse keeping only the projected fields. JSON is filtered at the token level, so the
+     * skipped values are never turned into nodes; XML is filtered on the way out of the
+     * converter. A payload with none of the fields becomes an empty object.
+     * */
+    public JsonNode parseApiResponse(InputStream response, MediaType mediaType, Projection projection) {
+        if (projection == null) {
+            return parseApiResponse(response, mediaType);
+        }
+        JsonNode jsonNode = null;
+        try {
+            if (!MediaType.APPLICATION_XML.isCompatibleWith(mediaType)) {
+                jsonNode = readProjected(projection.filter(objectMapper.getFactory().createParser(response)));
+            }
+            else if (xmlStreamConverter != null) {
+                TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+                xmlStreamConverter.write(response, projection.filter(buffer));
+                jsonNode = readProjected(buffer.asParser());
+            }
+            else {
+                jsonNode = readProjected(projection.filter(xmlMapper.readTree(response).traverse(objectMapper)));
+            }
+        }
+        catch (Exception e) {
+            log.error("Exception in Util::parseApiResponse() : {}", e.getMessage());
+        }
+        return jsonNode;
+    }
+
+    private JsonNode readProjected(JsonParser parser) throws IOException {
+        try (parser) {
+            JsonNode jsonNode = objectMapper.readTree(parser);
+            return jsonNode != null ? jsonNode : objectMapper.createObjectNode();
+        }
+    }
     public JsonNode isSuccessFullApiCall(String errorsType){
         if(ERROR_FAIL_ANY.equals(errorsType)){
             throw new ApiFailedException(API_FAILED);
@@ -90,35 +186,188 @@ public class Util {
         EpoxyRequest request = new EpoxyRequest();
 
         if(epoxyRequestDTO.getBase64ApisEncoded() != null){
-            String jsonArrayString = decodeBase64(epoxyRequestDTO.getBase64ApisEncoded());
-            List<String> endpoints = fromJsonArrayToList(jsonArrayString);
-            if(endpoints == null){
-                throw new EpoxyBadRequestException(AppConstants.INCORRECT_BASE64);
+            String base64Apis = epoxyRequestDTO.getBase64ApisEncoded();
+            EndpointList endpointList = endpointListCache == null
+                    ? resolveEndpoints(base64Apis)
+                    : endpointListCache.get(base64Apis, this::resolveEndpoints);
+            if(!endpointList.isValid()){
+                throw new EpoxyBadRequestException(endpointList.getError());
             }
-            request.setEndpoints(endpoints);
+            request.setEndpoints(endpointList.getUrls());
+            request.setHosts(endpointList.getHosts());
         }
 
         if(epoxyRequestDTO.getErrorsType() != null){
-            if(!ERROR_FAIL_ANY.equals(epoxyRequestDTO.getErrorsType()) && !ERROR_REPLACE.equals(epoxyRequestDTO.getErrorsType())) {
+            if(!ERROR_FAIL_ANY.equals(epoxyRequestDTO.getErrorsType()) && !ERROR_REPLACE.equals(epoxyRequestDTO.getErrorsType())
+                    && !ERROR_PARTIAL.equals(epoxyRequestDTO.getErrorsType())) {
                 throw new EpoxyBadRequestException(AppConstants.INVALID_ERROR_TYPE);
             }
             request.setErrorsType(epoxyRequestDTO.getErrorsType());
         }
 
-        request.setTimeout(epoxyRequestDTO.getTimeout()==null?TIME_OUT:epoxyRequestDTO.getTimeout());
+        request.setTimeout(epoxyRequestDTO.getTimeout());
+        request.setCache(epoxyRequestDTO.getCache()==null || epoxyRequestDTO.getCache());
+        request.setPassthrough(epoxyRequestDTO.getPassthrough()!=null && epoxyRequestDTO.getPassthrough());
+
+        if(epoxyRequestDTO.getOrder() != null){
+            if(!ORDER_INPUT.equals(epoxyRequestDTO.getOrder()) && !ORDER_COMPLETION.equals(epoxyRequestDTO.getOrder())) {
+                throw new EpoxyBadRequestException(AppConstants.INVALID_ORDER);
+            }
+            request.setOrder(epoxyRequestDTO.getOrder());
+        }
+
+        request.setProjection(projection(epoxyRequestDTO.getFields()));
+
+        if(epoxyRequestDTO.getMode() != null){
+            if(!MODE_COMBINED.equals(epoxyRequestDTO.getMode()) && !MODE_APPENDED.equals(epoxyRequestDTO.getMode())) {
+                throw new EpoxyBadRequestException(AppConstants.INVALID_MODE);
+            }
+            request.setMode(epoxyRequestDTO.getMode());
+        }
 
         return request;
     }
 
-    public void setRestTemplateTimeout(int timeoutInMilliseconds, RestTemplate restTemplate) {
-        ClientHttpRequestFactory factory = restTemplate.getRequestFactory();
+    private Projection projection(String fields) {
+        try {
+            return Projection.parse(fields);
+        }
+        catch (IllegalArgumentException e) {
+            throw new EpoxyBadRequestException(AppConstants.INVALID_FIELDS);
+        }
+    }
+
+    /*
+     * Decodes the {apis} segment and checks every endpoint is an absolute http(s) URL.
+     * */
+    public EndpointList resolveEndpoints(String base64Apis) {
+        List<String> endpoints;
+        try {
+            endpoints = fromJsonArrayToList(decodeBase64(base64Apis));
+        }
+        catch (IllegalArgumentException e) {
+            log.error("Exception in Util::resolveEndpoints() : {}", e.getMessage());
+            endpoints = null;
+        }
+        if(endpoints == null){
+            return EndpointList.invalid(AppConstants.INCORRECT_BASE64);
+        }
+
+        List<String> hosts = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            String host = httpHost(endpoint);
+            if (host == null) {
+                return EndpointList.invalid(AppConstants.INVALID_ENDPOINT);
+            }
+            hosts.add(host);
+        }
+        return EndpointList.valid(endpoints, hosts);
+    }
+
+    private String httpHost(String endpoint) {
+        try {
+            URI uri = new URI(endpoint);
+            boolean http = "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+            return http && uri.getHost() != null ? hostPort(uri) : null;
+        }
+        catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /*
+     * host[:port] of the URI, never the user info the authority may carry along.
+     * */
+    public static String hostPort(URI uri) {
+        return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    }
+
+    /*
+     * Token-level read of a batch body, one entry at a time, so the request is never held
+     * as a tree: only the compact entries are kept. Fails on the first malformed entry, and
+     * on an entry whose key (alias, or URL) was taken already, as it keys the response.
+     * */
+    public List<BatchEntry> readBatchEntries(InputStream body, int maxEntries) {
+        List<BatchEntry> entries = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                if (entries.size() == maxEntries) {
+                    throw new EpoxyBadRequestException(AppConstants.BATCH_TOO_LARGE);
+                }
+                BatchEntry entry = readBatchEntry(parser);
+                if (!keys.add(entry.getKey())) {
+                    throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
+                }
+                entries.add(entry);
+            }
+            if (token != JsonToken.END_ARRAY || parser.nextToken() != null) {
+                throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
+            }
+        }
+        catch (IOException e) {
+            log.error("Exception in Util::readBatchEntries() : {}", e.getMessage());
+            throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
+        }
+        return entries;
+    }
+
+    private BatchEntry readBatchEntry(JsonParser parser) throws IOException {
+        BatchEntry entry = new BatchEntry();
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "url":
+                    entry.setUrl(value == JsonToken.VALUE_STRING ? parser.getText() : null);
+                    break;
+                case "alias":
+                    entry.setAlias(value == JsonToken.VALUE_STRING ? parser.getText() : null);
+                    break;
+                case "timeout":
+                    if (value != JsonToken.VALUE_NULL) {
+                        entry.setTimeout(positiveInt(parser, value));
+                    }
+                    break;
+                case "priority":
+                    if (value != JsonToken.VALUE_NULL) {
+                        entry.setPriority(intValue(parser, value));
+                    }
+                    break;
+                case "fields":
+                    if (value != JsonToken.VALUE_NULL && value != JsonToken.VALUE_STRING) {
+                        throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
+                    }
+                    entry.setProjection(value == JsonToken.VALUE_STRING ? projection(parser.getText()) : null);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        String host = entry.getUrl() == null ? null : httpHost(entry.getUrl());
+        if (host == null) {
+            throw new EpoxyBadRequestException(AppConstants.INVALID_ENDPOINT);
+        }
+        entry.setHost(host);
+        return entry;
+    }
+
+    private int positiveInt(JsonParser parser, JsonToken value) throws IOException {
+        int number = intValue(parser, value);
+        if (number <= 0) {
+            throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
+        }
+        return number;
+    }
 
-        if (factory instanceof SimpleClientHttpRequestFactory) {
-            SimpleClientHttpRequestFactory simpleFactory = (SimpleClientHttpRequestFactory) factory;
-            simpleFactory.setConnectTimeout(timeoutInMilliseconds);
-            simpleFactory.setReadTimeout(timeoutInMilliseconds);
-        } else {
-            throw new UnsupportedOperationException("Cannot set timeouts on this type of ClientHttpRequestFactory");
+    private int intValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_NUMBER_INT) {
+            throw new EpoxyBadRequestException(AppConstants.INVALID_BATCH);
         }
+        return parser.getIntValue();
     }
 }
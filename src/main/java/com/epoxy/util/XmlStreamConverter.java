@@ -0,0 +1,334 @@
+package com.epoxy.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * StAX conversion of XML straight into Jackson tokens of an output generator, or into a tree
+ * built from the same events, without the token stream and deserializer XmlMapper goes through.
+ * The shape is XmlMapper's: the root element is dropped, attributes become fields (attributePrefix
+ * + name), text next to attributes or children goes under textKey and all values are strings.
+ * Siblings of the same name are merged into one array, wherever they occur among the other
+ * children, and elements in arrayElements are always arrays.
+ *
+ * readTree merges them in the nodes as they come. write holds the members of each object in a
+ * TokenBuffer per name until its end tag, then writes every name once; past maxBufferedChars held
+ * back the conversion fails rather than writing a field twice.
+ * */
+public class XmlStreamConverter {
+
+    private static final int TOKEN_CHARS = 1;
+
+    private final XMLInputFactory inputFactory;
+    private final Set<String> arrayElements;
+    private final String attributePrefix;
+    private final String textKey;
+    private final long maxBufferedChars;
+
+    public XmlStreamConverter(Set<String> arrayElements, String attributePrefix, String textKey, long maxBufferedChars) {
+        this.arrayElements = Set.copyOf(arrayElements);
+        this.attributePrefix = attributePrefix;
+        this.textKey = textKey;
+        this.maxBufferedChars = maxBufferedChars;
+        inputFactory = XMLInputFactory.newFactory();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public XmlStreamConverter() {
+        this(Set.of(), "", "", 1 << 20);
+    }
+
+    public void write(InputStream xml, JsonGenerator generator) throws IOException {
+        try {
+            convert(inputFactory.createXMLStreamReader(xml), new GeneratorOutput(generator, maxBufferedChars));
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    public JsonNode readTree(InputStream xml) throws IOException {
+        try {
+            return readTree(inputFactory.createXMLStreamReader(xml));
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    public JsonNode readTree(String xml) throws IOException {
+        try {
+            return readTree(inputFactory.createXMLStreamReader(new StringReader(xml)));
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private JsonNode readTree(XMLStreamReader reader) throws XMLStreamException, IOException {
+        TreeOutput tree = new TreeOutput();
+        convert(reader, tree);
+        return tree.root;
+    }
+
+    private void convert(XMLStreamReader reader, Output output) throws XMLStreamException, IOException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    new Conversion(reader, output).element();
+                    return;
+                }
+            }
+            throw new IOException("No root element");
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /*
+     * Receiver of the converted structure. A field seen again in the same object takes every value
+     * in an array, as does an array field (arrayElements) from its first value on.
+     * */
+    private interface Output {
+        void startObject() throws IOException;
+        void endObject() throws IOException;
+        void field(String name, boolean array) throws IOException;
+        void string(String value) throws IOException;
+    }
+
+    /*
+     * Holds the values of each field of the open objects in a TokenBuffer until the object ends,
+     * then writes it into the field of its parent (the generator for the root).
+     * */
+    private static final class GeneratorOutput implements Output {
+
+        private final JsonGenerator generator;
+        private final long maxBufferedChars;
+        private final Deque<Members> objects = new ArrayDeque<>();
+        private long bufferedChars;
+
+        private GeneratorOutput(JsonGenerator generator, long maxBufferedChars) {
+            this.generator = generator;
+            this.maxBufferedChars = maxBufferedChars;
+        }
+
+        @Override
+        public void startObject() throws IOException {
+            objects.push(new Members(value()));
+            account(TOKEN_CHARS);
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            Members members = objects.pop();
+            JsonGenerator target = members.target;
+            target.writeStartObject();
+            for (Map.Entry<String, Values> field : members.fields.entrySet()) {
+                Values values = field.getValue();
+                target.writeFieldName(field.getKey());
+                if (values.array || values.count > 1) {
+                    target.writeStartArray();
+                    values.tokens.serialize(target);
+                    target.writeEndArray();
+                }
+                else {
+                    values.tokens.serialize(target);
+                }
+            }
+            target.writeEndObject();
+            if (objects.isEmpty()) {
+                bufferedChars = 0;
+            }
+        }
+
+        @Override
+        public void field(String name, boolean array) throws IOException {
+            Members members = objects.peek();
+            members.current = members.fields.computeIfAbsent(name, key -> new Values());
+            members.current.array |= array;
+            account(TOKEN_CHARS + name.length());
+        }
+
+        @Override
+        public void string(String value) throws IOException {
+            value().writeString(value);
+            account(TOKEN_CHARS + value.length());
+        }
+
+        /*
+         * Where the next value goes: the current field of the innermost open object, counted as one more value.
+         * */
+        private JsonGenerator value() {
+            Members members = objects.peek();
+            if (members == null) {
+                return generator;
+            }
+            members.current.count++;
+            return members.current.tokens;
+        }
+
+        private void account(long chars) throws IOException {
+            bufferedChars += chars;
+            if (bufferedChars > maxBufferedChars) {
+                throw new IOException("XML object over " + maxBufferedChars + " buffered chars");
+            }
+        }
+    }
+
+    private static final class Members {
+        private final JsonGenerator target;
+        private final Map<String, Values> fields = new LinkedHashMap<>();
+        private Values current;
+
+        private Members(JsonGenerator target) {
+            this.target = target;
+        }
+    }
+
+    private static final class Values {
+        private final TokenBuffer tokens = new TokenBuffer((ObjectCodec) null, false);
+        private int count;
+        private boolean array;
+    }
+
+    /*
+     * Builds the nodes directly. A field seen again turns into an array holding every value.
+     * */
+    private static final class TreeOutput implements Output {
+
+        private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+        private final Deque<ObjectNode> objects = new ArrayDeque<>();
+        private JsonNode root;
+        private String fieldName;
+
+        @Override
+        public void startObject() {
+            ObjectNode objectNode = nodeFactory.objectNode();
+            add(objectNode);
+            objects.push(objectNode);
+        }
+
+        @Override
+        public void endObject() {
+            objects.pop();
+        }
+
+        @Override
+        public void field(String name, boolean array) {
+            fieldName = name;
+            if (array && !objects.peek().has(name)) {
+                objects.peek().putArray(name);
+            }
+        }
+
+        @Override
+        public void string(String value) {
+            add(nodeFactory.textNode(value));
+        }
+
+        private void add(JsonNode node) {
+            ObjectNode parent = objects.peek();
+            if (parent == null) {
+                root = node;
+                return;
+            }
+            JsonNode existing = parent.putIfAbsent(fieldName, node);
+            if (existing instanceof ArrayNode) {
+                ((ArrayNode) existing).add(node);
+            }
+            else if (existing != null) {
+                parent.set(fieldName, nodeFactory.arrayNode().add(existing).add(node));
+            }
+        }
+    }
+
+    private final class Conversion {
+
+        private final XMLStreamReader reader;
+        private final Output output;
+
+        private Conversion(XMLStreamReader reader, Output output) {
+            this.reader = reader;
+            this.output = output;
+        }
+
+        /*
+         * Converts the element the reader is on into the current field of the output, up to its end tag.
+         * */
+        private void element() throws XMLStreamException, IOException {
+            boolean object = false;
+            int attributeCount = reader.getAttributeCount();
+            if (attributeCount > 0) {
+                output.startObject();
+                object = true;
+                for (int i = 0; i < attributeCount; i++) {
+                    field(attributePrefix + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+            }
+
+            String text = "";
+            while (true) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (!object) {
+                            output.startObject();
+                            object = true;
+                        }
+                        text(text);
+                        text = "";
+                        String name = reader.getLocalName();
+                        output.field(name, arrayElements.contains(name));
+                        element();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        text = text.isEmpty() ? reader.getText() : text + reader.getText();
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (!object) {
+                            output.string(text);
+                            return;
+                        }
+                        text(text);
+                        output.endObject();
+                        return;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void field(String name, String value) throws IOException {
+            output.field(name, false);
+            output.string(value);
+        }
+
+        private void text(String text) throws IOException {
+            if (!text.isBlank()) {
+                field(textKey, text);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.epoxy.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.Deadline;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+public class DeadlineAwareClientHttpRequestFactoryTest {
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                try {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        httpClient = HttpClients.createDefault();
+        restTemplate = new RestTemplate(new DeadlineAwareClientHttpRequestFactory(httpClient));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCreateRequest_givenDeadline_shouldTimeOutSlowApiAtDeadline() {
+        long start = System.nanoTime();
+
+        assertThrows(ResourceAccessException.class,
+                () -> Deadline.after(100).run(() -> restTemplate.getForEntity(url("/slow"), String.class)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+    }
+
+    @Test
+    public void testCreateRequest_givenConcurrentDeadlines_shouldNotAffectEachOther() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        CyclicBarrier bothStarted = new CyclicBarrier(2);
+        CompletableFuture<String> shortFetch = CompletableFuture.supplyAsync(() -> {
+            await(bothStarted);
+            return Deadline.after(50).run(() -> restTemplate.getForEntity(url("/slow"), String.class).getBody());
+        }, callers);
+        CompletableFuture<String> longFetch = CompletableFuture.supplyAsync(() -> {
+            await(bothStarted);
+            return Deadline.after(2000).run(() -> restTemplate.getForEntity(url("/slow"), String.class).getBody());
+        }, callers);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> shortFetch.get(900, TimeUnit.MILLISECONDS));
+        assertTrue(exception.getCause() instanceof ResourceAccessException);
+        assertFalse(longFetch.isDone());
+        assertEquals("{}", longFetch.get(2000, TimeUnit.MILLISECONDS));
+        callers.shutdown();
+    }
+
+    private void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(1, TimeUnit.SECONDS);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testCreateRequest_givenCancelledFetch_shouldAbortRequestInFlight() {
+        Cancellation cancellation = new Cancellation();
+        CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(cancellation::cancel);
+        long start = System.nanoTime();
+
+        assertThrows(ResourceAccessException.class, () -> cancellation.run(() -> restTemplate.getForEntity(url("/slow"), String.class)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
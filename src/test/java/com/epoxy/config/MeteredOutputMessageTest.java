@@ -0,0 +1,46 @@
+package com.epoxy.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.epoxy.service.FetchMetrics;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+public class MeteredOutputMessageTest {
+
+    private final FetchMetrics fetchMetrics = mock(FetchMetrics.class);
+
+    @Test
+    public void testWrite_givenBodyUnderThreshold_shouldSetContentLength() throws Exception {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        MeteredOutputMessage.write(fetchMetrics, FetchMetrics.FORMAT_JSON, 64, outputMessage,
+                message -> message.getBody().write(body(10)));
+
+        assertEquals(10, outputMessage.getHeaders().getContentLength());
+        assertEquals(10, outputMessage.getBodyAsBytes().length);
+        verify(fetchMetrics).recordSerialize(eq(FetchMetrics.FORMAT_JSON), eq(FetchMetrics.OUTCOME_SUCCESS), anyLong(), eq(10L));
+    }
+
+    @Test
+    public void testWrite_givenBodyOverThreshold_shouldStreamWithoutContentLength() throws Exception {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        MeteredOutputMessage.write(fetchMetrics, FetchMetrics.FORMAT_SMILE, 64, outputMessage, message -> {
+            message.getBody().write(body(40));
+            message.getBody().flush();
+            message.getBody().write(body(40));
+        });
+
+        assertEquals(-1, outputMessage.getHeaders().getContentLength());
+        assertEquals(80, outputMessage.getBodyAsBytes().length);
+        verify(fetchMetrics).recordSerialize(eq(FetchMetrics.FORMAT_SMILE), eq(FetchMetrics.OUTCOME_SUCCESS), anyLong(), eq(80L));
+    }
+
+    private byte[] body(int length) {
+        return "x".repeat(length).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,50 @@
+package com.epoxy.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.epoxy.model.dto.EpoxyRequestDTO;
+import com.epoxy.service.EpoxyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class EpoxyControllerTest {
+
+    @Mock
+    private EpoxyService epoxyService;
+
+    @InjectMocks
+    private EpoxyController epoxyController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(epoxyController).build();
+    }
+
+    @Test
+    public void testAppendedStream_givenTimeout_shouldPassItToService() throws Exception {
+        when(epoxyService.streamAppended(any(EpoxyRequestDTO.class))).thenReturn(outputStream -> { });
+
+        mockMvc.perform(get("/v1/fetch/YXBp/appended")
+                        .param("errors", "replace")
+                        .param("stream", "true")
+                        .param("timeout", "250"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<EpoxyRequestDTO> request = ArgumentCaptor.forClass(EpoxyRequestDTO.class);
+        verify(epoxyService).streamAppended(request.capture());
+        assertEquals(250, request.getValue().getTimeout());
+    }
+}
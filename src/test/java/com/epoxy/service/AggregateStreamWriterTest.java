@@ -0,0 +1,110 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.exceptions.ApiFailedException;
+import com.epoxy.model.EpoxyRequest;
+import com.epoxy.model.constants.AppConstants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+public class AggregateStreamWriterTest {
+
+    private static final String USERS = "https://jsonplaceholder.typicode.com/users";
+    private static final String COMMENTS = "https://jsonplaceholder.typicode.com/comments";
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private AggregateStreamWriter aggregateStreamWriter;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testWriteAppended_givenCompletionOrder_shouldWriteFirstCompletedEntryFirst() throws Exception {
+        CompletableFuture<JsonNode> users = CompletableFuture.supplyAsync(() -> {
+            sleep(100);
+            return objectMapper.createObjectNode().put("id", 1);
+        });
+        CompletableFuture<JsonNode> comments = CompletableFuture.completedFuture(objectMapper.readTree("{\"id\":2}"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        aggregateStreamWriter.writeAppended(outputStream, request(AppConstants.ORDER_COMPLETION), Arrays.asList(users, comments));
+
+        JsonNode result = objectMapper.readTree(outputStream.toByteArray());
+        assertEquals(2, result.size());
+        assertTrue(result.get(0).has(COMMENTS));
+        assertTrue(result.get(1).has(USERS));
+    }
+
+    @Test
+    public void testWriteAppended_givenInputOrder_shouldKeepEndpointOrder() throws Exception {
+        CompletableFuture<JsonNode> users = CompletableFuture.supplyAsync(() -> {
+            sleep(100);
+            return objectMapper.createObjectNode().put("id", 1);
+        });
+        CompletableFuture<JsonNode> comments = CompletableFuture.completedFuture(null);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        aggregateStreamWriter.writeAppended(outputStream, request(AppConstants.ORDER_INPUT), Arrays.asList(users, comments));
+
+        assertEquals("[{\"" + USERS + "\":{\"id\":1}},{\"" + COMMENTS + "\":\"failed\"}]",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteCombined_givenResponses_shouldWriteObjectKeyedByUrl() throws Exception {
+        List<CompletableFuture<JsonNode>> futures = Arrays.asList(
+                CompletableFuture.completedFuture(objectMapper.readTree("{\"id\":1}")),
+                CompletableFuture.completedFuture(null));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        aggregateStreamWriter.writeCombined(outputStream, request(null), futures);
+
+        JsonNode result = objectMapper.readTree(outputStream.toByteArray());
+        assertEquals(1, result.get(USERS).get("id").asInt());
+        assertEquals(AppConstants.API_FAILED, result.get(COMMENTS).asText());
+    }
+
+    @Test
+    public void testWriteCombined_givenFailAnyFailureFirst_shouldThrowBeforeWritingAnything() {
+        List<CompletableFuture<JsonNode>> futures = Arrays.asList(
+                CompletableFuture.failedFuture(new ApiFailedException(AppConstants.API_FAILED)),
+                new CompletableFuture<>());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertThrows(ApiFailedException.class, () -> aggregateStreamWriter.writeCombined(outputStream, request(null), futures));
+        assertEquals(0, outputStream.size());
+    }
+
+    private EpoxyRequest request(String order) {
+        return EpoxyRequest.builder()
+                .endpoints(Arrays.asList(USERS, COMMENTS))
+                .errorsType(AppConstants.ERROR_REPLACE)
+                .order(order)
+                .build();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
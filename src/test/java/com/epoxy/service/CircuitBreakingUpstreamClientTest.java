@@ -0,0 +1,104 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.config.exceptions.CircuitOpenException;
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.model.constants.CircuitState;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.CircuitBreaker;
+import com.epoxy.util.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class CircuitBreakingUpstreamClientTest {
+
+    private static final String URL = "http://127.0.0.1:18081/users";
+
+    @Mock
+    private UpstreamCircuitBreakers upstreamCircuitBreakers;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 2, 50, 100, 1000, 60000, 1);
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(upstreamCircuitBreakers.forHost("127.0.0.1:18081")).thenReturn(breaker);
+    }
+
+    @Test
+    public void testGet_givenServerErrors_shouldOpenAndShortCircuit() {
+        CircuitBreakingUpstreamClient client = new CircuitBreakingUpstreamClient((url, deadline, bodyReader) -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(UpstreamResponse.builder().statusCode(503).build());
+        }, upstreamCircuitBreakers);
+
+        client.get(URL, Deadline.after(1000), null).join();
+        client.get(URL, Deadline.after(1000), null).join();
+        CompletableFuture<UpstreamResponse> rejected = client.get(URL, Deadline.after(1000), null);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(2, calls.get());
+        ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(exception.getCause() instanceof CircuitOpenException);
+    }
+
+    @Test
+    public void testGet_givenClientErrorsAndCancellations_shouldStayClosed() {
+        CompletableFuture<UpstreamResponse> pending = new CompletableFuture<>();
+        CircuitBreakingUpstreamClient client = new CircuitBreakingUpstreamClient((url, deadline, bodyReader) ->
+                calls.incrementAndGet() == 1 ? pending : CompletableFuture.completedFuture(UpstreamResponse.builder().statusCode(404).build()),
+                upstreamCircuitBreakers);
+
+        client.get(URL, Deadline.after(1000), null).cancel(true);
+        client.get(URL, Deadline.after(1000), null).join();
+        client.get(URL, Deadline.after(1000), null).join();
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getCalls());
+    }
+
+    @Test
+    public void testGet_givenCallsCancelledAtDeadline_shouldOpen() {
+        CircuitBreakingUpstreamClient client = new CircuitBreakingUpstreamClient((url, deadline, bodyReader) -> {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        }, upstreamCircuitBreakers);
+
+        Cancellation.cancelAtDeadline(client.get(URL, Deadline.after(1000), null));
+        Cancellation.cancelAtDeadline(client.get(URL, Deadline.after(1000), null));
+        CompletableFuture<UpstreamResponse> rejected = client.get(URL, Deadline.after(1000), null);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(2, calls.get());
+        ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(exception.getCause() instanceof CircuitOpenException);
+    }
+
+    @Test
+    public void testForHost_givenMoreHostsThanTags_shouldPublishOnlyTaggedBreakers() {
+        EpoxyProperties epoxyProperties = new EpoxyProperties();
+        epoxyProperties.getMetrics().setMaxHostTags(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UpstreamCircuitBreakers breakers = new UpstreamCircuitBreakers(epoxyProperties, meterRegistry);
+
+        CircuitBreaker first = breakers.forHost("127.0.0.1:18081");
+        CircuitBreaker second = breakers.forHost("10.0.0.1");
+
+        assertSame(first, breakers.forHost("127.0.0.1:18081"));
+        assertNotSame(first, second);
+        assertEquals(2, breakers.snapshot().size());
+        assertEquals(1, meterRegistry.get("epoxy.upstream.circuit.state").gauges().size());
+        assertNotNull(meterRegistry.find("epoxy.upstream.circuit.state").tag("host", "127.0.0.1:18081").gauge());
+    }
+}
@@ -0,0 +1,114 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Cancellation;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.HedgeBudget;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class HedgedUpstreamClientTest {
+
+    private static final String URL = "http://127.0.0.1:18081/users";
+
+    @Mock
+    private UpstreamLatencies upstreamLatencies;
+
+    private final List<CompletableFuture<UpstreamResponse>> calls = new CopyOnWriteArrayList<>();
+
+    private final UpstreamClient delegate = (url, deadline, bodyReader) -> {
+        CompletableFuture<UpstreamResponse> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    };
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testGet_givenSlowCall_shouldHedgeAndTakeFirstResponse() throws Exception {
+        when(upstreamLatencies.hedgeDelay("127.0.0.1:18081")).thenReturn(20L);
+        HedgedUpstreamClient client = new HedgedUpstreamClient(delegate, upstreamLatencies, new HedgeBudget(100, 1));
+        UpstreamResponse response = UpstreamResponse.builder().statusCode(200).build();
+
+        CompletableFuture<UpstreamResponse> result = client.get(URL, Deadline.after(1000), null);
+        Thread.sleep(100);
+        assertEquals(2, calls.size());
+        calls.get(1).complete(response);
+
+        assertSame(response, result.get(100, TimeUnit.MILLISECONDS));
+        assertTrue(calls.get(0).isCancelled());
+        assertEquals(1, client.getHedgesWon());
+        verify(upstreamLatencies).record(eq("127.0.0.1:18081"), anyLong());
+    }
+
+    @Test
+    public void testGet_givenSpentBudget_shouldNotHedge() throws Exception {
+        when(upstreamLatencies.hedgeDelay("127.0.0.1:18081")).thenReturn(10L);
+        HedgedUpstreamClient client = new HedgedUpstreamClient(delegate, upstreamLatencies, new HedgeBudget(10, 1));
+
+        client.get(URL, Deadline.after(1000), null);
+        Thread.sleep(50);
+
+        assertEquals(1, calls.size());
+        assertEquals(1, client.getHedgesThrottled());
+    }
+
+    @Test
+    public void testGet_givenHedgedCallFails_shouldWaitForOtherCall() throws Exception {
+        when(upstreamLatencies.hedgeDelay("127.0.0.1:18081")).thenReturn(10L);
+        HedgedUpstreamClient client = new HedgedUpstreamClient(delegate, upstreamLatencies, new HedgeBudget(100, 1));
+        UpstreamResponse response = UpstreamResponse.builder().statusCode(200).build();
+
+        CompletableFuture<UpstreamResponse> result = client.get(URL, Deadline.after(1000), null);
+        Thread.sleep(50);
+        calls.get(0).completeExceptionally(new IllegalStateException("connection reset"));
+        assertFalse(result.isDone());
+        calls.get(1).complete(response);
+
+        assertSame(response, result.get(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testGet_givenBurstOfTimeouts_shouldRaiseAdaptiveTimeout() throws Exception {
+        EpoxyProperties epoxyProperties = new EpoxyProperties();
+        epoxyProperties.getLatency().setMinSamples(5);
+        UpstreamLatencies latencies = new UpstreamLatencies(epoxyProperties);
+        HedgedUpstreamClient client = new HedgedUpstreamClient(delegate, latencies, new HedgeBudget(100, 1));
+        for (int i = 0; i < 10; i++) {
+            client.get(URL, Deadline.after(1000), null);
+            calls.get(i).complete(UpstreamResponse.builder().statusCode(200).build());
+        }
+        assertEquals(100, latencies.adaptiveTimeout(URL));
+
+        List<CompletableFuture<UpstreamResponse>> slow = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            slow.add(client.get(URL, Deadline.after(1000), null));
+        }
+        Thread.sleep(200);
+        for (int i = 0; i < slow.size(); i++) {
+            if (i % 2 == 0) {
+                Cancellation.cancelAtDeadline(slow.get(i));
+            }
+            else {
+                slow.get(i).completeExceptionally(new HttpTimeoutException("request timed out"));
+            }
+        }
+
+        assertTrue(latencies.adaptiveTimeout(URL) >= 400);
+    }
+}
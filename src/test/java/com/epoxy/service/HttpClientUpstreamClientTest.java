@@ -0,0 +1,132 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.Util;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+public class HttpClientUpstreamClientTest {
+
+    private final CountDownLatch finishBody = new CountDownLatch(1);
+
+    private HttpServer server;
+    private HttpClientUpstreamClient upstreamClient;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/users", exchange -> {
+            byte[] body = "{\"email\":\"Sincere@april.biz\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/gzip", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(("{\"accept\":\"" + acceptEncoding + "\"}").getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            exchange.getResponseBody().write(compressed.toByteArray());
+            exchange.close();
+        });
+        server.createContext("/trickle", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("{\"email\":".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try {
+                finishBody.await(2, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseBody().write("\"Sincere@april.biz\"}".getBytes(StandardCharsets.UTF_8));
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        upstreamClient = new HttpClientUpstreamClient(HttpClient.newHttpClient());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGet_givenJsonApi_shouldReturnBodyAndContentType() throws Exception {
+        CompletableFuture<UpstreamResponse> result = upstreamClient.get(url("/users"), Deadline.after(1000), new Util()::parseApiResponse);
+
+        UpstreamResponse response = result.get(1000, TimeUnit.MILLISECONDS);
+        assertTrue(response.is2xxSuccessful());
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getContentType()));
+        assertEquals("Sincere@april.biz", response.getJsonNode().get("email").asText());
+        assertEquals(29, response.getBodyBytes());
+    }
+
+    @Test
+    public void testGet_givenGzipApi_shouldAdvertiseAndDecompress() throws Exception {
+        CompletableFuture<UpstreamResponse> result = upstreamClient.get(url("/gzip"), Deadline.after(5000), new Util()::parseApiResponse);
+
+        UpstreamResponse response = result.get(1000, TimeUnit.MILLISECONDS);
+        assertTrue(response.is2xxSuccessful());
+        assertEquals("gzip, deflate", response.getJsonNode().get("accept").asText());
+        assertNull(response.getHeaders().getFirst("Content-Encoding"));
+    }
+
+    @Test
+    public void testGet_givenTricklingBody_shouldParseWhileItArrives() throws Exception {
+        CountDownLatch readStarted = new CountDownLatch(1);
+        UpstreamBodyReader bodyReader = (body, contentType) -> {
+            readStarted.countDown();
+            return new Util().parseApiResponse(body, contentType);
+        };
+
+        CompletableFuture<UpstreamResponse> result = upstreamClient.get(url("/trickle"), Deadline.after(5000), bodyReader);
+
+        assertTrue(readStarted.await(1000, TimeUnit.MILLISECONDS));
+        assertFalse(result.isDone());
+        finishBody.countDown();
+        assertEquals("Sincere@april.biz", result.get(1000, TimeUnit.MILLISECONDS).getJsonNode().get("email").asText());
+    }
+
+    @Test
+    public void testGet_givenSlowApi_shouldFailAtDeadline() {
+        CompletableFuture<UpstreamResponse> result = upstreamClient.get(url("/slow"), Deadline.after(100), new Util()::parseApiResponse);
+
+        assertThrows(ExecutionException.class, () -> result.get(1000, TimeUnit.MILLISECONDS));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,229 @@
+package com.epoxy.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Stand-in Redis for tests: the RESP2 subset the shared cache uses (PING, GET, SET with PX/EX,
+ * DEL, FLUSHALL, QUIT) on a loopback port, one thread per connection, values kept in memory.
+ * A down server keeps its port bound and drops every connection: a closed loopback port can be
+ * handed out as a client's own ephemeral port, and a connection to it then talks to itself.
+ * */
+class InProcessRedisServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Value> values = new ConcurrentHashMap<>();
+    private final List<Socket> clients = new ArrayList<>();
+    private final AtomicInteger commands = new AtomicInteger();
+    private volatile boolean down;
+
+    InProcessRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "in-process-redis-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String address() {
+        return "127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    int size() {
+        values.values().removeIf(Value::isExpired);
+        return values.size();
+    }
+
+    int getCommands() {
+        return commands.get();
+    }
+
+    /*
+     * Drops the open connections and every later one, as a node that went away would.
+     * */
+    void down() throws IOException {
+        down = true;
+        closeClients();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        closeClients();
+    }
+
+    private void closeClients() throws IOException {
+        synchronized (clients) {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                if (down) {
+                    client.close();
+                    continue;
+                }
+                synchronized (clients) {
+                    clients.add(client);
+                }
+                Thread handler = new Thread(() -> serve(client), "in-process-redis-client");
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client;
+             InputStream in = new BufferedInputStream(client.getInputStream());
+             OutputStream out = new BufferedOutputStream(client.getOutputStream())) {
+            List<byte[]> command;
+            while ((command = readCommand(in)) != null) {
+                commands.incrementAndGet();
+                boolean quit = execute(command, out);
+                out.flush();
+                if (quit) {
+                    return;
+                }
+            }
+        }
+        catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private boolean execute(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING":
+                simple(out, "PONG");
+                return false;
+            case "GET": {
+                Value value = values.get(key(command.get(1)));
+                if (value == null || value.isExpired()) {
+                    out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                }
+                else {
+                    out.write(("$" + value.bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(value.bytes);
+                    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                }
+                return false;
+            }
+            case "SET": {
+                long expiresAt = Long.MAX_VALUE;
+                for (int i = 3; i + 1 < command.size(); i += 2) {
+                    String option = new String(command.get(i), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+                    long amount = Long.parseLong(new String(command.get(i + 1), StandardCharsets.US_ASCII));
+                    if ("PX".equals(option)) {
+                        expiresAt = System.currentTimeMillis() + amount;
+                    }
+                    else if ("EX".equals(option)) {
+                        expiresAt = System.currentTimeMillis() + amount * 1000;
+                    }
+                }
+                values.put(key(command.get(1)), new Value(command.get(2), expiresAt));
+                simple(out, "OK");
+                return false;
+            }
+            case "DEL": {
+                int removed = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    removed += values.remove(key(command.get(i))) != null ? 1 : 0;
+                }
+                out.write((":" + removed + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                return false;
+            }
+            case "FLUSHALL":
+                values.clear();
+                simple(out, "OK");
+                return false;
+            case "QUIT":
+                simple(out, "OK");
+                return true;
+            default:
+                out.write(("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.US_ASCII));
+                return false;
+        }
+    }
+
+    /*
+     * A RESP array of bulk strings, null at end of stream.
+     * */
+    private List<byte[]> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        if (header.charAt(0) != '*') {
+            throw new IOException("Inline commands are not supported");
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<byte[]> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String bulk = readLine(in);
+            if (bulk == null || bulk.charAt(0) != '$') {
+                throw new IOException("Expected a bulk string");
+            }
+            byte[] argument = in.readNBytes(Integer.parseInt(bulk.substring(1)));
+            in.readNBytes(2);
+            command.add(argument);
+        }
+        return command;
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                in.read();
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return null;
+    }
+
+    private void simple(OutputStream out, String reply) throws IOException {
+        out.write(("+" + reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String key(byte[] key) {
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static final class Value {
+        private final byte[] bytes;
+        private final long expiresAt;
+
+        private Value(byte[] bytes, long expiresAt) {
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
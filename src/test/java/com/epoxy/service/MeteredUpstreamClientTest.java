@@ -0,0 +1,90 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.model.UpstreamResponse;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+public class MeteredUpstreamClientTest {
+
+    private static final String URL = "http://127.0.0.1:18081/users";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final FetchMetrics fetchMetrics = new FetchMetrics(meterRegistry);
+
+    @Test
+    public void testGet_givenJsonResponse_shouldTimeRequestAndParseAndCountBytes() {
+        byte[] body = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        MeteredUpstreamClient client = new MeteredUpstreamClient((url, deadline, bodyReader) -> {
+            try {
+                return CompletableFuture.completedFuture(
+                        UpstreamBodyReader.readResponse(200, headers, new ByteArrayInputStream(body), bodyReader));
+            }
+            catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }, fetchMetrics);
+
+        UpstreamResponse response = client.get(URL, Deadline.after(1000), new Util()::parseApiResponse).join();
+
+        assertEquals(1, response.getJsonNode().get("id").asInt());
+        assertEquals(1, meterRegistry.get("epoxy.upstream.request")
+                .tags("host", "127.0.0.1:18081", "content_type", "json", "outcome", "2xx").timer().count());
+        assertEquals(1, meterRegistry.get("epoxy.upstream.parse")
+                .tags("host", "127.0.0.1:18081", "content_type", "json", "outcome", "success").timer().count());
+        assertEquals(body.length, meterRegistry.get("epoxy.upstream.bytes.in").tag("host", "127.0.0.1:18081").counter().count());
+    }
+
+    @Test
+    public void testGet_givenUncommonContentType_shouldTagItOther() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/vnd.example-4711+yaml"));
+        MeteredUpstreamClient client = new MeteredUpstreamClient((url, deadline, bodyReader) ->
+                CompletableFuture.completedFuture(UpstreamResponse.builder().statusCode(200).headers(headers).build()), fetchMetrics);
+
+        client.get(URL, Deadline.after(1000), null).join();
+
+        assertEquals(1, meterRegistry.get("epoxy.upstream.request")
+                .tags("host", "127.0.0.1:18081", "content_type", "other", "outcome", "2xx").timer().count());
+    }
+
+    @Test
+    public void testGet_givenFailedCall_shouldRecordErrorOutcome() {
+        MeteredUpstreamClient client = new MeteredUpstreamClient((url, deadline, bodyReader) ->
+                CompletableFuture.failedFuture(new IllegalStateException("connection refused")), fetchMetrics);
+
+        assertThrows(Exception.class, () -> client.get(URL, Deadline.after(1000), null).join());
+
+        assertEquals(1, meterRegistry.get("epoxy.upstream.request")
+                .tags("host", "127.0.0.1:18081", "outcome", "error").timer().count());
+    }
+
+    @Test
+    public void testGet_givenMoreHostsThanTags_shouldTagTheRestOther() {
+        EpoxyProperties epoxyProperties = new EpoxyProperties();
+        epoxyProperties.getMetrics().setMaxHostTags(1);
+        MeteredUpstreamClient client = new MeteredUpstreamClient((url, deadline, bodyReader) ->
+                CompletableFuture.failedFuture(new IllegalStateException("connection refused")),
+                new FetchMetrics(meterRegistry, epoxyProperties));
+
+        for (String url : new String[] {URL, "http://10.0.0.1/users", "http://10.0.0.2/users"}) {
+            assertThrows(Exception.class, () -> client.get(url, Deadline.after(1000), null).join());
+        }
+
+        assertEquals(1, meterRegistry.get("epoxy.upstream.request").tag("host", "127.0.0.1:18081").timer().count());
+        assertEquals(2, meterRegistry.get("epoxy.upstream.request").tag("host", "other").timer().count());
+        assertEquals(2, meterRegistry.get("epoxy.upstream.request").timers().size());
+    }
+}
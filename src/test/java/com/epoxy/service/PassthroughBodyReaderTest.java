@@ -0,0 +1,131 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.Projection;
+import com.epoxy.util.Util;
+import com.epoxy.util.XmlStreamConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.POJONode;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PassthroughBodyReaderTest {
+
+    @Spy
+    private Util util = new Util();
+
+    @Spy
+    private EpoxyProperties epoxyProperties = new EpoxyProperties();
+
+    @InjectMocks
+    private PassthroughBodyReader passthroughBodyReader;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testRead_givenJson_shouldSpliceBytesUnchanged() throws Exception {
+        String json = "{\"id\": 1,   \"email\" : \"Sincere@april.biz\"}";
+
+        JsonNode jsonNode = read(json, MediaType.APPLICATION_JSON);
+
+        assertTrue(jsonNode instanceof POJONode);
+        String output = objectMapper.writeValueAsString(Collections.singletonMap("users", jsonNode));
+        assertEquals("{\"users\":" + json + "}", output);
+    }
+
+    @Test
+    public void testRead_givenNonUtf8Charset_shouldSpliceTranscodedBytes() throws Exception {
+        String json = "{\"name\": \"Zo\u00eb\", \"city\": \"M\u00fcnchen\"}";
+        MediaType utf16 = new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.UTF_16);
+        MediaType latin1 = new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.ISO_8859_1);
+
+        JsonNode fromUtf16 = passthroughBodyReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_16)), utf16);
+        JsonNode fromLatin1 = passthroughBodyReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.ISO_8859_1)), latin1,
+                Projection.parse("/city"));
+
+        assertTrue(fromUtf16 instanceof POJONode);
+        byte[] output = objectMapper.writeValueAsBytes(Collections.singletonMap("users", fromUtf16));
+        assertEquals("{\"users\":" + json + "}", new String(output, StandardCharsets.UTF_8));
+        assertEquals("M\u00fcnchen", objectMapper.readTree(output).at("/users/city").asText());
+        assertEquals("{\"city\":\"M\u00fcnchen\"}", new String(objectMapper.writeValueAsBytes(fromLatin1), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRead_givenInvalidJson_shouldReturnNull() throws Exception {
+        assertNull(read("{\"id\": 1", MediaType.APPLICATION_JSON));
+        assertNull(read("{\"id\": 1} {\"id\": 2}", MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testRead_givenXml_shouldParseTree() throws Exception {
+        JsonNode jsonNode = read("<Travelerinformation><id>11133</id></Travelerinformation>", MediaType.APPLICATION_XML);
+
+        assertFalse(jsonNode instanceof POJONode);
+        assertEquals("11133", jsonNode.get("id").asText());
+    }
+
+    @Test
+    public void testRead_givenXmlWithStreamingConverter_shouldSpliceConvertedBytes() throws Exception {
+        ReflectionTestUtils.setField(passthroughBodyReader, "xmlStreamConverter", new XmlStreamConverter());
+
+        JsonNode jsonNode = read("<Travelerinformation><id>11133</id><name>Dev</name></Travelerinformation>", MediaType.APPLICATION_XML);
+
+        assertTrue(jsonNode instanceof POJONode);
+        assertEquals("{\"id\":\"11133\",\"name\":\"Dev\"}", objectMapper.writeValueAsString(jsonNode));
+        assertNull(read("<Travelerinformation><id>11133</Travelerinformation>", MediaType.APPLICATION_XML));
+    }
+
+    @Test
+    public void testRead_givenProjection_shouldSpliceOnlyProjectedFields() throws Exception {
+        Projection projection = Projection.parse("$.items[*].id");
+        String json = "{\"total\": 2, \"items\": [{\"id\": 1, \"tags\": [\"a\"]}, {\"id\": 2}]}";
+
+        JsonNode jsonNode = read(json, MediaType.APPLICATION_JSON, projection);
+
+        assertTrue(jsonNode instanceof POJONode);
+        assertEquals("{\"items\":[{\"id\":1},{\"id\":2}]}", objectMapper.writeValueAsString(jsonNode));
+        assertEquals("{}", objectMapper.writeValueAsString(read("[1, 2]", MediaType.APPLICATION_JSON, projection)));
+        assertNull(read("{\"items\": [", MediaType.APPLICATION_JSON, projection));
+    }
+
+    @Test
+    public void testRead_givenXmlProjectionWithStreamingConverter_shouldSpliceOnlyProjectedFields() throws Exception {
+        ReflectionTestUtils.setField(passthroughBodyReader, "xmlStreamConverter", new XmlStreamConverter());
+
+        JsonNode jsonNode = read("<Travelerinformation><id>11133</id><name>Dev</name></Travelerinformation>", MediaType.APPLICATION_XML,
+                Projection.parse("/name"));
+
+        assertEquals("{\"name\":\"Dev\"}", objectMapper.writeValueAsString(jsonNode));
+    }
+
+    @Test
+    public void testRead_givenContentTypeValidationOnly_shouldNotScanJson() throws Exception {
+        epoxyProperties.getPassthrough().setValidate(false);
+
+        assertTrue(read("{\"id\": 1", MediaType.APPLICATION_JSON) instanceof POJONode);
+    }
+
+    private JsonNode read(String body, MediaType contentType) throws Exception {
+        return passthroughBodyReader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), contentType);
+    }
+
+    private JsonNode read(String body, MediaType contentType, Projection projection) throws Exception {
+        return passthroughBodyReader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), contentType, projection);
+    }
+}
@@ -0,0 +1,150 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.model.EpoxyRequest;
+import com.epoxy.model.constants.AppConstants;
+import com.epoxy.util.Deadline;
+import com.epoxy.util.RawJsonBytes;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+public class ServerSentEventWriterTest {
+
+    private static final String USERS = "https://jsonplaceholder.typicode.com/users";
+    private static final String COMMENTS = "https://jsonplaceholder.typicode.com/comments";
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private EpoxyProperties epoxyProperties = new EpoxyProperties();
+
+    @InjectMocks
+    private ServerSentEventWriter serverSentEventWriter;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testWrite_givenResults_shouldSendEachAsItCompletesThenSummary() throws Exception {
+        CompletableFuture<JsonNode> users = CompletableFuture.supplyAsync(() -> {
+            sleep(100);
+            return objectMapper.createObjectNode().put("id", 1);
+        });
+        CompletableFuture<JsonNode> comments = CompletableFuture.completedFuture(null);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serverSentEventWriter.write(outputStream, request(), Arrays.asList(users, comments), System.nanoTime(), null);
+
+        String[] events = outputStream.toString(StandardCharsets.UTF_8).split("\n\n");
+        assertEquals(3, events.length);
+        assertTrue(events[0].startsWith("event: result\nid: 1\ndata: {\"url\":\"" + COMMENTS + "\",\"status\":\"failed\""));
+        assertTrue(events[1].startsWith("event: result\nid: 0\ndata: {\"url\":\"" + USERS + "\",\"status\":\"ok\""));
+        assertTrue(events[1].endsWith(",\"data\":{\"id\":1}}"));
+
+        JsonNode summary = objectMapper.readTree(data(events[2], "summary"));
+        assertTrue(summary.get("latencyMs").asLong() >= 100);
+        assertEquals(USERS, summary.at("/entries/0/url").asText());
+        assertEquals(AppConstants.STATUS_OK, summary.at("/entries/0/status").asText());
+        assertTrue(summary.at("/entries/0/latencyMs").asLong() >= 100);
+        assertEquals(AppConstants.STATUS_FAILED, summary.at("/entries/1/status").asText());
+    }
+
+    @Test
+    public void testWrite_givenMultiLinePassthroughBody_shouldKeepEventOnOneDataLine() throws Exception {
+        byte[] body = "{\n  \"id\": 1,\r\n  \"name\": \"a\\nb\"\n}\n".getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<JsonNode> users = CompletableFuture.completedFuture(RawJsonBytes.node(body));
+        CompletableFuture<JsonNode> comments = CompletableFuture.completedFuture(RawJsonBytes.node("{\"id\":2}".getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serverSentEventWriter.write(outputStream, request(), Arrays.asList(users, comments), System.nanoTime(), null);
+
+        String[] events = outputStream.toString(StandardCharsets.UTF_8).split("\n\n");
+        assertEquals(3, events.length);
+        String[] lines = events[0].split("\n");
+        assertEquals(3, lines.length, events[0]);
+        assertTrue(lines[2].startsWith("data: "));
+        assertEquals(objectMapper.readTree(body), objectMapper.readTree(lines[2].substring("data: ".length())).get("data"));
+        assertTrue(events[0].endsWith(",\"data\":{\"id\":1,\"name\":\"a\\nb\"}}"));
+    }
+
+    @Test
+    public void testWrite_givenDeadline_shouldReportPendingWithoutCancelling() throws Exception {
+        CompletableFuture<JsonNode> users = new CompletableFuture<>();
+        CompletableFuture<JsonNode> comments = CompletableFuture.completedFuture(objectMapper.readTree("{\"id\":2}"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serverSentEventWriter.write(outputStream, request(), Arrays.asList(users, comments), System.nanoTime(), Deadline.after(100));
+
+        String[] events = outputStream.toString(StandardCharsets.UTF_8).split("\n\n");
+        assertEquals(2, events.length);
+        JsonNode summary = objectMapper.readTree(data(events[1], "summary"));
+        assertEquals(AppConstants.STATUS_PENDING, summary.at("/entries/0/status").asText());
+        assertFalse(summary.get("entries").get(0).has("latencyMs"));
+        assertFalse(users.isDone());
+    }
+
+    @Test
+    public void testWrite_givenSlowUpstream_shouldSendHeartbeats() throws Exception {
+        epoxyProperties.getSse().setHeartbeatMs(20);
+        CompletableFuture<JsonNode> users = CompletableFuture.supplyAsync(() -> {
+            sleep(100);
+            return objectMapper.createObjectNode();
+        });
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serverSentEventWriter.write(outputStream, request(), List.of(users), System.nanoTime(), null);
+
+        assertTrue(outputStream.toString(StandardCharsets.UTF_8).startsWith(": heartbeat\n\n: heartbeat\n\n"));
+    }
+
+    @Test
+    public void testWrite_givenClientGone_shouldCancelFetchesInFlight() throws Exception {
+        CompletableFuture<JsonNode> users = new CompletableFuture<>();
+        CompletableFuture<JsonNode> comments = CompletableFuture.completedFuture(objectMapper.readTree("{\"id\":2}"));
+        OutputStream closedStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class,
+                () -> serverSentEventWriter.write(closedStream, request(), Arrays.asList(users, comments), System.nanoTime(), null));
+        assertTrue(users.isCancelled());
+    }
+
+    private String data(String event, String name) {
+        assertTrue(event.startsWith("event: " + name + "\ndata: "));
+        return event.substring(event.indexOf("data: ") + "data: ".length());
+    }
+
+    private EpoxyRequest request() {
+        return EpoxyRequest.builder().endpoints(Arrays.asList(USERS, COMMENTS)).errorsType(AppConstants.ERROR_REPLACE).build();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
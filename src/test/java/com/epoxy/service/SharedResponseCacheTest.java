@@ -0,0 +1,163 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.RawJsonBytes;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+public class SharedResponseCacheTest {
+
+    private static final String USERS = "https://jsonplaceholder.typicode.com/users";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final long[] now = {System.currentTimeMillis()};
+    private InProcessRedisServer first;
+    private InProcessRedisServer second;
+    private RedisSharedCacheBackend backend;
+    private SharedResponseCache sharedResponseCache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        first = new InProcessRedisServer();
+        second = new InProcessRedisServer();
+        backend = new RedisSharedCacheBackend(shared(first.address(), second.address()));
+        backend.bindTo(meterRegistry);
+        sharedResponseCache = new SharedResponseCache(backend, Duration.ofSeconds(60), 4, meterRegistry, () -> now[0]);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        sharedResponseCache.close();
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testGet_givenStoredTree_shouldReturnItWithRemainingTtl() throws Exception {
+        JsonNode users = objectMapper.readTree("[{\"id\":1,\"name\":\"Leanne\"},{\"id\":2,\"name\":\"Ervin\"}]");
+
+        sharedResponseCache.put(USERS, users, headers("max-age=30"));
+        SharedResponseCache.Hit hit = awaitHit(USERS);
+
+        assertEquals(users, hit.getJsonNode());
+        assertEquals(Duration.ofSeconds(30), hit.getTtl());
+        assertNull(hit.getStaleWhileRevalidate());
+        assertNull(hit.getStaleIfError());
+        assertEquals(1.0, meterRegistry.counter("epoxy.cache.shared.lookups", "result", "hit").count());
+    }
+
+    @Test
+    public void testGet_givenStaleDirectives_shouldReturnTheirWindows() throws Exception {
+        sharedResponseCache.put(USERS, objectMapper.createObjectNode(), headers("max-age=30, stale-while-revalidate=10, stale-if-error=600"));
+        SharedResponseCache.Hit hit = awaitHit(USERS);
+
+        assertEquals(Duration.ofSeconds(10), hit.getStaleWhileRevalidate());
+        assertEquals(Duration.ofSeconds(600), hit.getStaleIfError());
+    }
+
+    @Test
+    public void testGet_givenStoredPassthrough_shouldReturnRawBytes() throws Exception {
+        byte[] json = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+        sharedResponseCache.put("passthrough:" + USERS, RawJsonBytes.node(json), null);
+        SharedResponseCache.Hit hit = awaitHit("passthrough:" + USERS);
+
+        assertArrayEquals(json, UpstreamResponseCache.rawJson(hit.getJsonNode()).asUnquotedUTF8());
+        assertEquals(json.length, hit.getBytes());
+    }
+
+    @Test
+    public void testGet_givenUnknownKey_shouldMiss() throws Exception {
+        assertNull(sharedResponseCache.get(USERS).get());
+        assertEquals(1.0, meterRegistry.counter("epoxy.cache.shared.lookups", "result", "miss").count());
+    }
+
+    @Test
+    public void testPut_givenNoStore_shouldNotWrite() throws Exception {
+        sharedResponseCache.put(USERS, objectMapper.createObjectNode(), headers("no-store"));
+
+        Thread.sleep(100);
+        assertEquals(0, first.size() + second.size());
+    }
+
+    @Test
+    public void testPut_givenExpiredEntry_shouldMiss() throws Exception {
+        sharedResponseCache.put(USERS, objectMapper.createObjectNode(), headers("max-age=60"));
+        awaitHit(USERS);
+        double misses = meterRegistry.counter("epoxy.cache.shared.lookups", "result", "miss").count();
+
+        now[0] += 60_000;
+
+        assertNull(sharedResponseCache.get(USERS).get());
+        assertEquals(misses + 1, meterRegistry.counter("epoxy.cache.shared.lookups", "result", "miss").count());
+    }
+
+    @Test
+    public void testPut_givenManyKeys_shouldShardThemAcrossNodes() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            sharedResponseCache.put(USERS + "/" + i, objectMapper.createObjectNode().put("id", i), null);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, awaitHit(USERS + "/" + i).getJsonNode().get("id").asInt());
+        }
+
+        assertEquals(100, first.size() + second.size());
+        assertTrue(first.size() > 20 && second.size() > 20);
+    }
+
+    @Test
+    public void testGet_givenNodeDown_shouldMissAndOpenCircuit() throws Exception {
+        first.down();
+        second.down();
+
+        for (int i = 0; i < 20; i++) {
+            assertNull(sharedResponseCache.get(USERS + "/" + i).get());
+        }
+
+        assertEquals(20.0, meterRegistry.counter("epoxy.cache.shared.lookups", "result", "error").count());
+        List<Double> states = Arrays.asList(
+                meterRegistry.get("epoxy.cache.shared.circuit.state").tag("node", first.address()).gauge().value(),
+                meterRegistry.get("epoxy.cache.shared.circuit.state").tag("node", second.address()).gauge().value());
+        assertEquals(Arrays.asList(1.0, 1.0), states);
+    }
+
+    private SharedResponseCache.Hit awaitHit(String key) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            SharedResponseCache.Hit hit = sharedResponseCache.get(key).get();
+            if (hit != null) {
+                return hit;
+            }
+            Thread.sleep(10);
+        }
+        fail("No shared cache entry for " + key);
+        return null;
+    }
+
+    private HttpHeaders headers(String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(cacheControl);
+        return headers;
+    }
+
+    private EpoxyProperties.Shared shared(String... nodes) {
+        EpoxyProperties.Shared shared = new EpoxyProperties.Shared();
+        shared.setEnabled(true);
+        shared.setNodes(Arrays.asList(nodes));
+        shared.setTimeoutMs(500);
+        shared.setMaxConnections(4);
+        return shared;
+    }
+}
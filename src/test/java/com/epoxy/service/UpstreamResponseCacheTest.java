@@ -0,0 +1,179 @@
+package com.epoxy.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.util.RawJsonBytes;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+public class UpstreamResponseCacheTest {
+
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(5);
+
+    private UpstreamResponseCache responseCache;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        responseCache = new UpstreamResponseCache(cacheProperties(), meterRegistry);
+    }
+
+    @Test
+    public void testPut_givenCacheableResponse_shouldReturnCachedJsonNodeAndCountHits() throws Exception {
+        String url = "https://jsonplaceholder.typicode.com/users";
+        JsonNode jsonNode = new ObjectMapper().readTree("{\"id\":1}");
+
+        assertNull(responseCache.get(url));
+        responseCache.put(url, jsonNode, new HttpHeaders(), 8);
+
+        assertSame(jsonNode, responseCache.get(url));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void testPut_givenNoStoreResponse_shouldNotCache() throws Exception {
+        String url = "https://jsonplaceholder.typicode.com/users";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("no-store");
+
+        responseCache.put(url, new ObjectMapper().readTree("{\"id\":1}"), headers, 8);
+
+        assertNull(responseCache.get(url));
+    }
+
+    @Test
+    public void testTimeToLive_givenCacheControl_shouldPreferSharedMaxAge() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("public, max-age=60, s-maxage=120");
+
+        assertEquals(Duration.ofSeconds(120), UpstreamResponseCache.timeToLive(headers, DEFAULT_TTL));
+    }
+
+    @Test
+    public void testTimeToLive_givenExpires_shouldUseExpiresMinusDate() {
+        HttpHeaders headers = new HttpHeaders();
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        headers.setDate(now);
+        headers.setExpires(now + 30000);
+
+        assertEquals(Duration.ofSeconds(30), UpstreamResponseCache.timeToLive(headers, DEFAULT_TTL));
+    }
+
+    @Test
+    public void testTimeToLive_givenNoCachingHeaders_shouldUseDefaultTtl() {
+        assertEquals(DEFAULT_TTL, UpstreamResponseCache.timeToLive(new HttpHeaders(), DEFAULT_TTL));
+    }
+
+    @Test
+    public void testLookup_givenAgingEntry_shouldGoFromFreshToRevalidatableToErrorOnly() throws Exception {
+        String url = "https://jsonplaceholder.typicode.com/users";
+        long[] now = {0};
+        responseCache = new UpstreamResponseCache(cacheProperties(), meterRegistry, () -> now[0]);
+        JsonNode jsonNode = new ObjectMapper().readTree("{\"id\":1}");
+        responseCache.put(url, jsonNode, new HttpHeaders(), 8);
+
+        assertTrue(responseCache.lookup(url).isFresh());
+        now[0] = TimeUnit.SECONDS.toNanos(10);
+        assertNull(responseCache.get(url));
+        assertTrue(responseCache.lookup(url).isRevalidatable());
+        now[0] = TimeUnit.SECONDS.toNanos(60);
+        assertFalse(responseCache.lookup(url).isRevalidatable());
+        assertSame(jsonNode, responseCache.staleIfError(url));
+        now[0] = TimeUnit.SECONDS.toNanos(400);
+        assertNull(responseCache.lookup(url));
+        assertEquals(1.0, meterRegistry.get("epoxy.upstream.responses.stale").tag("use", "error").counter().count());
+    }
+
+    @Test
+    public void testLookup_givenSharedCacheWindows_shouldUseThemOverDefaults() throws Exception {
+        String url = "https://jsonplaceholder.typicode.com/users";
+        long[] now = {0};
+        responseCache = new UpstreamResponseCache(cacheProperties(), meterRegistry, () -> now[0]);
+        JsonNode jsonNode = new ObjectMapper().readTree("{\"id\":1}");
+        responseCache.put(url, jsonNode, Duration.ofSeconds(5), Duration.ofSeconds(1), null, 8);
+
+        now[0] = TimeUnit.SECONDS.toNanos(7);
+        assertFalse(responseCache.lookup(url).isRevalidatable());
+        now[0] = TimeUnit.SECONDS.toNanos(300);
+        assertSame(jsonNode, responseCache.staleIfError(url));
+    }
+
+    @Test
+    public void testStaleWindow_givenCacheControlDirectives_shouldOverrideDefault() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60, stale-while-revalidate=30, stale-if-error=86400");
+
+        assertEquals(Duration.ofSeconds(30), UpstreamResponseCache.staleWindow(headers, "stale-while-revalidate=", DEFAULT_TTL));
+        assertEquals(Duration.ofDays(1), UpstreamResponseCache.staleWindow(headers, "stale-if-error=", DEFAULT_TTL));
+        assertEquals(DEFAULT_TTL, UpstreamResponseCache.staleWindow(new HttpHeaders(), "stale-if-error=", DEFAULT_TTL));
+    }
+
+    @Test
+    public void testLookup_givenOffHeapPayload_shouldDeserializeEqualTreeOnEachLookup() throws Exception {
+        String url = "https://jsonplaceholder.typicode.com/users";
+        responseCache = new UpstreamResponseCache(offHeapProperties(1024), meterRegistry);
+        JsonNode jsonNode = new ObjectMapper().readTree("{\"id\":1,\"tags\":[\"a\",\"b\"],\"ratio\":0.5}");
+
+        responseCache.put(url, jsonNode, new HttpHeaders(), 8);
+        JsonNode first = responseCache.get(url);
+        JsonNode second = responseCache.get(url);
+
+        assertEquals(jsonNode, first);
+        assertNotSame(jsonNode, first);
+        assertNotSame(first, second);
+        assertTrue(meterRegistry.get("epoxy.upstream.responses.offheap.used").gauge().value() > 0);
+    }
+
+    @Test
+    public void testLookup_givenOffHeapPassthroughPayload_shouldKeepRawJson() {
+        String url = "https://jsonplaceholder.typicode.com/users";
+        responseCache = new UpstreamResponseCache(offHeapProperties(1024), meterRegistry);
+        byte[] json = "{\"id\": 1}".getBytes(StandardCharsets.UTF_8);
+
+        responseCache.put(url, RawJsonBytes.node(json), new HttpHeaders(), json.length);
+        JsonNode cached = responseCache.get(url);
+
+        RawJsonBytes raw = (RawJsonBytes) ((RawValue) ((POJONode) cached).getPojo()).rawValue();
+        assertArrayEquals(json, raw.asUnquotedUTF8());
+    }
+
+    @Test
+    public void testLookup_givenOffHeapSegmentRecycled_shouldMiss() throws Exception {
+        responseCache = new UpstreamResponseCache(offHeapProperties(32), meterRegistry);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        responseCache.put("http://a.com/1", objectMapper.readTree("\"0123456789abcdefghij\""), new HttpHeaders(), 22);
+        responseCache.put("http://a.com/2", objectMapper.readTree("\"0123456789abcdefghij\""), new HttpHeaders(), 22);
+        responseCache.put("http://a.com/3", objectMapper.readTree("\"0123456789abcdefghij\""), new HttpHeaders(), 22);
+
+        assertNull(responseCache.lookup("http://a.com/1"));
+        assertNotNull(responseCache.lookup("http://a.com/3"));
+    }
+
+    private EpoxyProperties offHeapProperties(int segmentBytes) {
+        EpoxyProperties properties = cacheProperties();
+        properties.getCache().getOffHeap().setEnabled(true);
+        properties.getCache().getOffHeap().setCapacityBytes(2L * segmentBytes);
+        properties.getCache().getOffHeap().setSegmentBytes(segmentBytes);
+        properties.getCache().getOffHeap().setMinBytes(0);
+        return properties;
+    }
+
+    private EpoxyProperties cacheProperties() {
+        EpoxyProperties properties = new EpoxyProperties();
+        properties.getCache().setEnabled(true);
+        return properties;
+    }
+}
@@ -0,0 +1,71 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class BatchDispatcherTest {
+
+    private final RecordingLoader loader = new RecordingLoader();
+
+    @Test
+    public void testDispatch_givenMoreEntriesThanConcurrency_shouldStartHighestPriorityFirst() throws Exception {
+        BatchDispatcher<String, String> dispatcher = new BatchDispatcher<>(1, entry -> entry.startsWith("high") ? 1 : 0, loader::load);
+
+        List<CompletableFuture<String>> futures = dispatcher.dispatch(Arrays.asList("low-1", "high-1", "low-2", "high-2"));
+
+        assertEquals(List.of("high-1"), loader.started());
+        assertEquals(3, dispatcher.getQueued());
+        loader.get("high-1").complete("a");
+        loader.get("high-2").complete("b");
+        loader.get("low-1").complete("c");
+        loader.get("low-2").complete("d");
+
+        assertEquals(List.of("high-1", "high-2", "low-1", "low-2"), loader.started());
+        assertEquals("c", futures.get(0).get(100, TimeUnit.MILLISECONDS));
+        assertEquals("a", futures.get(1).get(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, dispatcher.getRunning());
+    }
+
+    @Test
+    public void testDispatch_givenConcurrencyLimit_shouldNeverExceedIt() {
+        BatchDispatcher<String, String> dispatcher = new BatchDispatcher<>(2, entry -> 0, loader::load);
+
+        dispatcher.dispatch(Arrays.asList("a", "b", "c", "d"));
+
+        assertEquals(List.of("a", "b"), loader.started());
+        assertEquals(2, dispatcher.getRunning());
+        loader.get("b").complete("b");
+        assertEquals(List.of("a", "b", "c"), loader.started());
+        assertEquals(2, dispatcher.getRunning());
+    }
+
+    @Test
+    public void testDispatch_givenQueuedEntryCancelled_shouldNeverStartIt() {
+        BatchDispatcher<String, String> dispatcher = new BatchDispatcher<>(1, entry -> 0, loader::load);
+
+        List<CompletableFuture<String>> futures = dispatcher.dispatch(Arrays.asList("a", "b", "c"));
+        futures.get(1).cancel(true);
+        futures.get(0).cancel(true);
+
+        assertTrue(loader.get("a").isCancelled());
+        assertEquals(List.of("a", "c"), loader.started());
+    }
+
+    @Test
+    public void testDispatch_givenInlineCompletions_shouldNotRecursePerEntry() throws Exception {
+        BatchDispatcher<Integer, Integer> dispatcher = new BatchDispatcher<>(1, entry -> 0, CompletableFuture::completedFuture);
+        List<Integer> entries = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+
+        List<CompletableFuture<Integer>> futures = dispatcher.dispatch(entries);
+
+        assertEquals(99999, futures.get(99999).get(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, dispatcher.getQueued());
+    }
+}
@@ -0,0 +1,67 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.model.constants.CircuitState;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 80, 1000, 50, 2);
+
+    @Test
+    public void testRecord_givenFailureRateAboveThreshold_shouldOpenAndReject() {
+        breaker.onSuccess(10);
+        breaker.onFailure(10);
+        breaker.onSuccess(10);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+
+        breaker.onFailure(10);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getNotPermitted());
+    }
+
+    @Test
+    public void testRecord_givenSlowCalls_shouldOpen() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(1500);
+        }
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testTryAcquire_givenWaitElapsed_shouldTrialAndClose() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(10);
+        }
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(10);
+        breaker.onSuccess(10);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testTryAcquire_givenFailedTrial_shouldReopen() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(10);
+        }
+        Thread.sleep(60);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        breaker.onFailure(10);
+        breaker.onSuccess(10);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+}
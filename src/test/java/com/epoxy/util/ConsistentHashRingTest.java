@@ -0,0 +1,67 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void testNodeFor_givenSameNodes_shouldPlaceKeysTheSameWay() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(Arrays.asList("a:6379", "b:6379", "c:6379"), 160, Function.identity());
+        ConsistentHashRing<String> reordered = new ConsistentHashRing<>(Arrays.asList("c:6379", "a:6379", "b:6379"), 160, Function.identity());
+
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.nodeFor(key(i)), reordered.nodeFor(key(i)));
+        }
+    }
+
+    @Test
+    public void testNodeFor_givenVirtualNodes_shouldSpreadKeysEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(Arrays.asList("a:6379", "b:6379", "c:6379", "d:6379"), 160, Function.identity());
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor(key(i)), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertTrue(count > KEYS / 4 * 0.75 && count < KEYS / 4 * 1.25, "count " + count));
+    }
+
+    @Test
+    public void testNodeFor_givenNodeRemoved_shouldOnlyMoveItsKeys() {
+        List<String> nodes = Arrays.asList("a:6379", "b:6379", "c:6379", "d:6379");
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, 160, Function.identity());
+        ConsistentHashRing<String> shrunk = new ConsistentHashRing<>(nodes.subList(0, 3), 160, Function.identity());
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String before = ring.nodeFor(key(i));
+            String after = shrunk.nodeFor(key(i));
+            if (!before.equals(after)) {
+                assertEquals("d:6379", before);
+                moved++;
+            }
+        }
+
+        assertTrue(moved > KEYS / 4 * 0.75 && moved < KEYS / 4 * 1.25, "moved " + moved);
+    }
+
+    @Test
+    public void testNodeFor_givenNoNodes_shouldReturnNull() {
+        assertNull(new ConsistentHashRing<String>(Collections.emptyList(), 160, Function.identity()).nodeFor("key"));
+    }
+
+    private String key(int i) {
+        return "https://api.example.com/items/" + i;
+    }
+}
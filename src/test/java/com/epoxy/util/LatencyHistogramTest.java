@@ -0,0 +1,36 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentile_givenSamples_shouldReturnBucketBoundWithin25Percent() {
+        LatencyHistogram histogram = new LatencyHistogram(60000);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10);
+        }
+
+        assertEquals(100, histogram.count());
+        long p95 = histogram.percentile(0.95);
+        assertTrue(p95 >= 950 && p95 <= 950 * 1.25, "p95 was " + p95);
+        long p50 = histogram.percentile(0.5);
+        assertTrue(p50 >= 500 && p50 <= 500 * 1.25, "p50 was " + p50);
+    }
+
+    @Test
+    public void testPercentile_givenNoSamples_shouldReturnMinusOne() {
+        assertEquals(-1, new LatencyHistogram(60000).percentile(0.95));
+    }
+
+    @Test
+    public void testPercentile_givenIdleWindows_shouldForgetOldSamples() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(20);
+        histogram.record(500);
+        Thread.sleep(60);
+
+        assertEquals(0, histogram.count());
+    }
+}
@@ -0,0 +1,70 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class OffHeapSegmentStoreTest {
+
+    private final OffHeapSegmentStore store = new OffHeapSegmentStore(32, 16);
+
+    @Test
+    public void testPut_givenPayload_shouldReadItBackInPlace() throws Exception {
+        OffHeapSegmentStore.Handle first = store.put(bytes("{\"a\":1}"));
+        OffHeapSegmentStore.Handle second = store.put(bytes("[1,2]"));
+
+        assertEquals("{\"a\":1}", store.read(first, this::string));
+        assertEquals("[1,2]", store.read(second, this::string));
+        assertEquals(12, store.getUsedBytes());
+        assertEquals(16, store.getAllocatedBytes());
+    }
+
+    @Test
+    public void testPut_givenRingFull_shouldEvictOldestSegment() throws Exception {
+        OffHeapSegmentStore.Handle oldest = store.put(bytes("0123456789"));
+        OffHeapSegmentStore.Handle middle = store.put(bytes("abcdefghij"));
+        OffHeapSegmentStore.Handle newest = store.put(bytes("ABCDEFGHIJ"));
+
+        assertNull(store.read(oldest, this::string));
+        assertFalse(store.contains(oldest));
+        assertEquals("abcdefghij", store.read(middle, this::string));
+        assertEquals("ABCDEFGHIJ", store.read(newest, this::string));
+        assertEquals(1, store.getEvictedSegments());
+        assertEquals(20, store.getUsedBytes());
+    }
+
+    @Test
+    public void testPut_givenPayloadLargerThanSegment_shouldReject() {
+        assertNull(store.put(new byte[17]));
+        assertEquals(0, store.getAllocatedBytes());
+    }
+
+    @Test
+    public void testConstructor_givenCapacityBelowOneSegment_shouldFailFast() {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapSegmentStore(8, 16));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapSegmentStore(32, 0));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapSegmentStore(32, -16));
+    }
+
+    @Test
+    public void testPut_givenSingleSegment_shouldNeverExceedCapacity() throws Exception {
+        OffHeapSegmentStore single = new OffHeapSegmentStore(20, 16);
+        OffHeapSegmentStore.Handle oldest = single.put(bytes("0123456789"));
+        OffHeapSegmentStore.Handle newest = single.put(bytes("abcdefghij"));
+
+        assertEquals(16, single.getCapacityBytes());
+        assertNull(single.read(oldest, this::string));
+        assertEquals("abcdefghij", single.read(newest, this::string));
+        assertEquals(16, single.getAllocatedBytes());
+    }
+
+    private String string(InputStream payload) throws java.io.IOException {
+        return new String(payload.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+public class ProjectionTest {
+
+    private static final String JSON = "{\"id\":1,\"name\":\"Leanne\",\"a/b\":true,\"address\":{\"city\":\"Gwenborough\",\"geo\":{\"lat\":\"-37.3\",\"lng\":\"81.1\"}},"
+            + "\"items\":[{\"id\":10,\"tags\":[\"x\",\"y\"]},{\"id\":11,\"tags\":[]},{\"id\":12}],\"0\":\"zero\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testFilter_givenJsonPointers_shouldKeepPathsAndEnclosingContainers() throws Exception {
+        assertEquals("{\"name\":\"Leanne\",\"address\":{\"geo\":{\"lat\":\"-37.3\"}}}", project("/name,/address/geo/lat"));
+        assertEquals("{\"a/b\":true}", project("/a~1b"));
+        assertEquals("{\"items\":[{\"id\":11,\"tags\":[]}]}", project("/items/1"));
+        assertEquals("{\"0\":\"zero\"}", project("/0"));
+    }
+
+    @Test
+    public void testFilter_givenJsonPath_shouldKeepPathsAndEnclosingContainers() throws Exception {
+        assertEquals("{\"items\":[{\"id\":10},{\"id\":11},{\"id\":12}]}", project("$.items[*].id"));
+        assertEquals("{\"items\":[{\"tags\":[\"x\",\"y\"]}]}", project("$['items'][0].tags"));
+        assertEquals("{\"address\":{\"city\":\"Gwenborough\",\"geo\":{\"lat\":\"-37.3\",\"lng\":\"81.1\"}}}", project("$.address.*"));
+        assertEquals("{\"items\":[{\"tags\":[\"y\"]}]}", project("$.items[*].tags[1]"));
+    }
+
+    @Test
+    public void testFilter_givenOverlappingPaths_shouldKeepWholeOuterValue() throws Exception {
+        assertEquals("{\"address\":{\"city\":\"Gwenborough\",\"geo\":{\"lat\":\"-37.3\",\"lng\":\"81.1\"}}}", project("/address/city,/address"));
+    }
+
+    @Test
+    public void testParse_givenWholeDocument_shouldReturnNull() {
+        assertNull(Projection.parse(null));
+        assertNull(Projection.parse(" "));
+        assertNull(Projection.parse("$"));
+        assertNull(Projection.parse(" $ "));
+    }
+
+    @Test
+    public void testParse_givenEmptyMember_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("/id, ,/name"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("/id,"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse(",/id"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("/id,$"));
+    }
+
+    @Test
+    public void testParse_givenUnsupportedExpressions_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("id"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("$..id"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("$.items[?(@.id)]"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("$.items[0"));
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("$.items[-1]"));
+    }
+
+    @Test
+    public void testKey_givenEquivalentSelections_shouldBeEqual() {
+        assertEquals(Projection.parse("/a/b,/items/*").key(), Projection.parse("$['items']['*'],$.a.b").key());
+        assertEquals("/a/b,/items/~0", Projection.parse("/items/~0, /a/b").key());
+        assertEquals("/items/~0,/items/~[0]", Projection.parse("$.items[0],$.items['~']").key());
+        assertNotEquals(Projection.parse("$.items[*]").key(), Projection.parse("/items/*").key());
+        assertNotEquals(Projection.parse("$.items[0]").key(), Projection.parse("/items/0").key());
+    }
+
+    private String project(String fields) throws Exception {
+        JsonNode jsonNode = objectMapper.readTree(Projection.parse(fields).filter(objectMapper.getFactory().createParser(JSON)));
+        return jsonNode.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class RawJsonBytesTest {
+
+    @Test
+    public void testSmile_givenPassthroughPayload_shouldTranscodeRawJson() throws Exception {
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+        JsonNode decoded = smileMapper.readTree(smileMapper.writeValueAsBytes(combined()));
+
+        assertEquals("Sincere@april.biz", decoded.at("/users/email").asText());
+        assertEquals(3, decoded.at("/users/ids").size());
+        assertEquals(1, decoded.at("/count").asInt());
+    }
+
+    @Test
+    public void testCbor_givenPassthroughPayload_shouldTranscodeRawJson() throws Exception {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+        JsonNode decoded = cborMapper.readTree(cborMapper.writeValueAsBytes(combined()));
+
+        assertEquals("Sincere@april.biz", decoded.at("/users/email").asText());
+        assertEquals(2, decoded.at("/users/ids/1").asInt());
+    }
+
+    @Test
+    public void testJson_givenPassthroughPayload_shouldWriteRawBytes() throws Exception {
+        assertEquals("{\"users\":{\"email\":\"Sincere@april.biz\",\"ids\":[1,2,3]},\"count\":1}",
+                new ObjectMapper().writeValueAsString(combined()));
+    }
+
+    private ObjectNode combined() {
+        byte[] json = "{\"email\":\"Sincere@april.biz\",\"ids\":[1,2,3]}".getBytes(StandardCharsets.UTF_8);
+        ObjectNode combined = JsonNodeFactory.instance.objectNode();
+        combined.set("users", RawJsonBytes.node(json));
+        combined.put("count", 1);
+        return combined;
+    }
+}
@@ -0,0 +1,40 @@
+package com.epoxy.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Loader of the BatchDispatcher tests: records the entries in the order they are started
+ * and hands each one a pending load that the test completes.
+ * */
+class RecordingLoader {
+
+    private final List<String> started = new ArrayList<>();
+    private final Map<String, CompletableFuture<String>> loads = new LinkedHashMap<>();
+
+    CompletableFuture<String> load(String entry) {
+        started.add(entry);
+        CompletableFuture<String> load = new CompletableFuture<>();
+        loads.put(entry, load);
+        return load;
+    }
+
+    List<String> started() {
+        return started;
+    }
+
+    CompletableFuture<String> get(String entry) {
+        return loads.get(entry);
+    }
+
+    void complete(String entry) {
+        loads.get(entry).complete(entry);
+    }
+
+    void completeAll() {
+        new ArrayList<>(loads.values()).forEach(load -> load.complete("done"));
+    }
+}
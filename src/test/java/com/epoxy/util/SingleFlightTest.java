@@ -0,0 +1,74 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    public void testLoad_givenConcurrentCallers_shouldShareOneLoad() throws Exception {
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = singleFlight.load("users", key -> {
+            loads.incrementAndGet();
+            return loading;
+        });
+        CompletableFuture<String> second = singleFlight.load("users", key -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        loading.complete("payload");
+
+        assertEquals("payload", first.get(100, TimeUnit.MILLISECONDS));
+        assertEquals("payload", second.get(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1, singleFlight.getCoalesced());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    public void testLoad_givenCallerTimesOut_shouldNotAffectOtherCallers() throws Exception {
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.load("users", key -> loading);
+        CompletableFuture<String> second = singleFlight.load("users", key -> loading);
+
+        first.orTimeout(10, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        loading.complete("payload");
+
+        assertTrue(first.isCompletedExceptionally());
+        assertThrows(Exception.class, first::join);
+        assertEquals("payload", second.get(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLoad_givenCompletedLoad_shouldStartNewLoad() throws Exception {
+        singleFlight.load("users", key -> CompletableFuture.completedFuture("first")).get();
+
+        assertEquals("second", singleFlight.load("users", key -> CompletableFuture.completedFuture("second")).get());
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    public void testLoad_givenEveryCallerCancels_shouldCancelLoad() {
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.load("users", key -> loading);
+        CompletableFuture<String> second = singleFlight.load("users", key -> loading);
+
+        first.cancel(true);
+        assertFalse(loading.isCancelled());
+
+        second.cancel(true);
+        assertTrue(loading.isCancelled());
+        assertEquals(1, singleFlight.getCancelled());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+}
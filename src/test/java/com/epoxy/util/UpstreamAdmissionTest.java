@@ -0,0 +1,197 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.exceptions.AdmissionRejectedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class UpstreamAdmissionTest {
+
+    private final RecordingLoader loader = new RecordingLoader();
+
+    @Test
+    public void testRelease_givenTwoWaitingRequests_shouldGrantPermitsInTurns() {
+        UpstreamAdmission admission = new UpstreamAdmission(2, 10);
+        BatchDispatcher<String, String> wide = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+        BatchDispatcher<String, String> narrow = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+
+        wide.dispatch(Arrays.asList("w1", "w2", "w3", "w4", "w5"));
+        narrow.dispatch(Arrays.asList("n1", "n2"));
+
+        assertEquals(List.of("w1", "w2"), loader.started());
+        assertEquals(2, admission.getWaitingRequests());
+        loader.complete("w1");
+        loader.complete("w2");
+        assertEquals(List.of("w1", "w2", "w3", "n1"), loader.started());
+        loader.complete("w3");
+        loader.complete("n1");
+
+        assertEquals(List.of("w1", "w2", "w3", "n1", "w4", "n2"), loader.started());
+        assertEquals(2, admission.getInFlight());
+    }
+
+    @Test
+    public void testRelease_givenNoWaitingRequests_shouldFreePermit() {
+        UpstreamAdmission admission = new UpstreamAdmission(2, 10);
+        BatchDispatcher<String, String> dispatcher = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+
+        dispatcher.dispatch(Arrays.asList("a", "b"));
+        assertEquals(2, admission.getInFlight());
+        loader.completeAll();
+
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getWaitingRequests());
+    }
+
+    @Test
+    public void testGrant_givenRequestCancelledWhileWaiting_shouldPassPermitOn() {
+        UpstreamAdmission admission = new UpstreamAdmission(1, 10);
+        BatchDispatcher<String, String> first = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+        BatchDispatcher<String, String> cancelled = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+        BatchDispatcher<String, String> third = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+
+        first.dispatch(Arrays.asList("a"));
+        cancelled.dispatch(Arrays.asList("b")).forEach(future -> future.cancel(true));
+        third.dispatch(Arrays.asList("c"));
+        loader.complete("a");
+
+        assertEquals(List.of("a", "c"), loader.started());
+        assertEquals(1, admission.getInFlight());
+    }
+
+    @Test
+    public void testGrant_givenPermitHeldPastEntryDeadline_shouldExpireWithoutLoading() throws Exception {
+        UpstreamAdmission admission = new UpstreamAdmission(1, 10);
+        BatchDispatcher<String, String> holder = new BatchDispatcher<>(10, admission, entry -> 0, loader::load);
+        BatchDispatcher<String, String> waiting = new BatchDispatcher<>(10, admission, entry -> 0,
+                entry -> Deadline.after(50), (entry, deadline) -> loader.load(entry), entry -> "expired");
+
+        holder.dispatch(Arrays.asList("a"));
+        List<CompletableFuture<String>> futures = waiting.dispatch(Arrays.asList("b"));
+
+        assertEquals("expired", futures.get(0).get(1000, TimeUnit.MILLISECONDS));
+        loader.complete("a");
+        assertEquals(List.of("a"), loader.started());
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getWaitingRequests());
+    }
+
+    @Test
+    public void testGrant_givenEntryAlreadyExpired_shouldCompleteWithoutLoading() throws Exception {
+        UpstreamAdmission admission = new UpstreamAdmission(1, 10);
+        BatchDispatcher<String, String> dispatcher = new BatchDispatcher<>(10, admission, entry -> 0,
+                entry -> Deadline.after(0), (entry, deadline) -> loader.load(entry), entry -> {
+                    throw new IllegalStateException("timed out");
+                });
+
+        List<CompletableFuture<String>> futures = dispatcher.dispatch(Arrays.asList("a", "b"));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> futures.get(1).get(1000, TimeUnit.MILLISECONDS));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        assertTrue(futures.get(0).isCompletedExceptionally());
+        assertTrue(loader.started().isEmpty());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void testAdmit_givenBudgetExhaustedAndLineFull_shouldReject() {
+        UpstreamAdmission admission = new UpstreamAdmission(1, 1);
+        new BatchDispatcher<String, String>(10, admission, entry -> 0, loader::load).dispatch(Arrays.asList("a", "b"));
+
+        assertEquals(1, admission.getWaitingRequests());
+        assertThrows(AdmissionRejectedException.class, admission::admit);
+        assertEquals(1, admission.getRejected());
+        loader.complete("a");
+        loader.complete("b");
+        assertDoesNotThrow(admission::admit);
+    }
+
+    @Test
+    public void testRelease_givenInlineCompletions_shouldNotRecursePerFetch() {
+        UpstreamAdmission admission = new UpstreamAdmission(1, 10);
+        BatchDispatcher<Integer, Integer> dispatcher = new BatchDispatcher<>(1, admission, entry -> 0, CompletableFuture::completedFuture);
+        List<Integer> entries = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            entries.add(i);
+        }
+
+        List<CompletableFuture<Integer>> futures = dispatcher.dispatch(entries);
+
+        assertEquals(99999, futures.get(99999).join());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void testRelease_givenSlowGrantOnAnotherThread_shouldStillHandOverPermit() throws Exception {
+        UpstreamAdmission admission = new UpstreamAdmission(2, 10);
+        CountDownLatch slowGranted = new CountDownLatch(1);
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        CountDownLatch fastGranted = new CountDownLatch(1);
+        assertTrue(admission.tryAcquire(() -> { }));
+        assertTrue(admission.tryAcquire(() -> { }));
+        assertFalse(admission.tryAcquire(() -> {
+            slowGranted.countDown();
+            try {
+                releaseSlow.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertFalse(admission.tryAcquire(fastGranted::countDown));
+
+        Thread slow = new Thread(admission::release);
+        slow.start();
+        assertTrue(slowGranted.await(1000, TimeUnit.MILLISECONDS));
+        admission.release();
+
+        assertTrue(fastGranted.await(0, TimeUnit.MILLISECONDS));
+        releaseSlow.countDown();
+        slow.join(1000);
+        assertEquals(2, admission.getInFlight());
+    }
+
+    @Test
+    public void testRelease_givenManyConcurrentReleases_shouldGrantEveryWaitingLane() throws Exception {
+        UpstreamAdmission admission = new UpstreamAdmission(4, 1000);
+        AtomicInteger queued = new AtomicInteger();
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            workers.add(executor.submit(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    UpstreamAdmission.Lane lane = () -> {
+                        granted.incrementAndGet();
+                        admission.release();
+                    };
+                    if (admission.tryAcquire(lane)) {
+                        admission.release();
+                    }
+                    else {
+                        queued.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(queued.get(), granted.get());
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getWaitingRequests());
+    }
+}
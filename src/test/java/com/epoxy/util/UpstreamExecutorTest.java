@@ -0,0 +1,70 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.epoxy.config.EpoxyProperties;
+import com.epoxy.model.constants.ExecutorMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class UpstreamExecutorTest {
+
+    private UpstreamExecutor upstreamExecutor;
+
+    @AfterEach
+    public void tearDown() {
+        if (upstreamExecutor != null) {
+            upstreamExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecute_givenBoundedPool_shouldTrackActiveAndQueuedFetches() throws Exception {
+        EpoxyProperties.FetchExecutor properties = new EpoxyProperties.FetchExecutor();
+        properties.setMaxThreads(1);
+        properties.setQueueCapacity(1);
+        upstreamExecutor = UpstreamExecutor.create(properties);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        upstreamExecutor.bindTo(meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        upstreamExecutor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        upstreamExecutor.execute(() -> {});
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        assertEquals(1, upstreamExecutor.getActive());
+        assertEquals(1, upstreamExecutor.getQueued());
+        assertThrows(RejectedExecutionException.class, () -> upstreamExecutor.execute(() -> {}));
+        assertEquals(1, upstreamExecutor.getRejected());
+        assertEquals(1, meterRegistry.get("epoxy.fetch.executor.rejected").functionCounter().count());
+
+        release.countDown();
+    }
+
+    @Test
+    public void testCreate_givenVirtualMode_shouldUseVirtualThreadsOrFallBackToBounded() {
+        EpoxyProperties.FetchExecutor properties = new EpoxyProperties.FetchExecutor();
+        properties.setMode(ExecutorMode.VIRTUAL);
+        upstreamExecutor = UpstreamExecutor.create(properties);
+
+        ExecutorMode expected = Runtime.version().feature() >= 21 ? ExecutorMode.VIRTUAL : ExecutorMode.BOUNDED;
+        assertEquals(expected, upstreamExecutor.getMode());
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
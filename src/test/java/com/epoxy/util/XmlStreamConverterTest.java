@@ -0,0 +1,117 @@
+package com.epoxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class XmlStreamConverterTest {
+
+    private final XmlMapper xmlMapper = new XmlMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final XmlStreamConverter converter = new XmlStreamConverter();
+
+    @Test
+    public void testReadTree_givenXml_shouldMatchXmlMapper() throws Exception {
+        String[] documents = {
+                "<Travelerinformation><id>11133</id><name>Developer</name><email>dev@mail.com</email></Travelerinformation>",
+                "<items><item><id>1</id></item><item><id>2</id></item><item><id>3</id></item></items>",
+                "<items><item>a</item><other>x</other><item>b</item></items>",
+                "<a id=\"7\" kind=\"x\"><b>1</b><c/><d></d></a>",
+                "<a><b id=\"1\">text</b><c><![CDATA[<raw>]]></c></a>",
+                "<a>\n  <b>1</b>\n  <b>2</b>\n</a>",
+                "<a><list><v>1</v></list><list><v>2</v><v>3</v></list></a>",
+        };
+        for (String xml : documents) {
+            assertEquals(xmlMapper.readTree(xml), converter.readTree(xml), xml);
+            assertEquals(xmlMapper.readTree(xml), converter.readTree(stream(xml)), xml);
+        }
+    }
+
+    @Test
+    public void testWrite_givenConsecutiveSiblings_shouldWriteArray() throws Exception {
+        JsonNode jsonNode = objectMapper.readTree(write(converter, "<items><item><id>1</id></item><item><id>2</id></item><total>2</total></items>"));
+
+        assertTrue(jsonNode.get("item").isArray());
+        assertEquals("2", jsonNode.at("/item/1/id").asText());
+        assertEquals("2", jsonNode.get("total").asText());
+    }
+
+    @Test
+    public void testWrite_givenArrayElementsAndPrefixes_shouldApplyMapping() throws Exception {
+        XmlStreamConverter configured = new XmlStreamConverter(Set.of("item"), "@", "#text", 1 << 20);
+
+        String json = write(configured, "<items count=\"1\"><item sku=\"A1\">apple</item></items>");
+
+        assertEquals("{\"@count\":\"1\",\"item\":[{\"@sku\":\"A1\",\"#text\":\"apple\"}]}", json);
+    }
+
+    @Test
+    public void testWrite_givenInterleavedSiblings_shouldMergeThemLikeXmlMapper() throws Exception {
+        String xml = "<r><a>1</a><b>2</b><a>3</a></r>";
+
+        String json = write(converter, xml);
+
+        assertEquals("{\"a\":[\"1\",\"3\"],\"b\":\"2\"}", json);
+        assertEquals(xmlMapper.readTree(xml), objectMapper.readTree(json));
+        assertEquals(xmlMapper.readTree(xml), converter.readTree(xml));
+    }
+
+    @Test
+    public void testWrite_givenNestedInterleavedSiblings_shouldMatchReadTree() throws Exception {
+        String xml = "<doc><page n=\"1\">" + records(3) + "<note>x</note>" + records(1) + "</page><meta/><page n=\"2\">" + records(2) + "</page></doc>";
+
+        JsonNode jsonNode = objectMapper.readTree(write(converter, xml));
+
+        assertEquals(xmlMapper.readTree(xml), jsonNode);
+        assertEquals(4, jsonNode.at("/page/0/record").size());
+        assertEquals(converter.readTree(xml), jsonNode);
+    }
+
+    @Test
+    public void testWrite_givenObjectOverBufferLimit_shouldFailWithoutRepeatingField() throws Exception {
+        XmlStreamConverter bounded = new XmlStreamConverter(Set.of(), "", "", 64);
+        String xml = "<doc><page>" + records(20) + "</page><page>" + records(2) + "</page></doc>";
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            assertThrows(IOException.class, () -> bounded.write(stream(xml), generator));
+        }
+        assertEquals(0, json.size());
+        assertEquals(xmlMapper.readTree(xml), bounded.readTree(xml));
+    }
+
+    @Test
+    public void testReadTree_givenInvalidXml_shouldThrow() {
+        assertThrows(IOException.class, () -> converter.readTree("<a><b>1</a>"));
+        assertThrows(IOException.class, () -> converter.readTree(stream("<!DOCTYPE a [<!ENTITY x SYSTEM \"file:///etc/passwd\">]><a>&x;</a>")));
+    }
+
+    private String write(XmlStreamConverter xmlStreamConverter, String xml) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            xmlStreamConverter.write(stream(xml), generator);
+        }
+        return json.toString(StandardCharsets.UTF_8);
+    }
+
+    private String records(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "<record><id>" + i + "</id></record>")
+                .collect(Collectors.joining());
+    }
+
+    private ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}